@@ -0,0 +1,47 @@
+package systems.cauldron.completion.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+class LatencyRecorder {
+
+    private final ReentrantLock lock;
+    private long[] samples;
+    private int sampleCount;
+
+    LatencyRecorder() {
+        this.lock = new ReentrantLock();
+        this.samples = new long[1024];
+    }
+
+    void record(long nanos) {
+        lock.lock();
+        try {
+            if (sampleCount == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[sampleCount++] = nanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long[] drain() {
+        lock.lock();
+        try {
+            long[] result = Arrays.copyOf(samples, sampleCount);
+            sampleCount = 0;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long percentile(long[] sortedSamples, double percentile) {
+        if (sortedSamples.length == 0) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+    }
+}
@@ -0,0 +1,297 @@
+package systems.cauldron.completion.loadtest;
+
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+
+    private static final List<String> DEFAULT_PROMPTS = List.of(
+            "His first program simply printed 'Hello",
+            "The quick brown fox",
+            "Once upon a time, in a land far away,",
+            "The three primary colors are",
+            "To be, or not to be, that is");
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private final CompletionProvider provider;
+    private final List<String> prompts;
+    private final Options options;
+    private final LatencyRecorder intervalFirstTokenLatencies;
+    private final LatencyRecorder intervalTotalLatencies;
+    private final LatencyRecorder firstTokenLatencies;
+    private final LatencyRecorder totalLatencies;
+    private final AtomicLong sentCount;
+    private final AtomicLong completedCount;
+    private final AtomicLong errorCount;
+    private final AtomicLong inFlightCount;
+    private final com.sun.management.OperatingSystemMXBean osBean;
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private long startNanos;
+    private long lastReportNanos;
+    private long lastCompletedCount;
+    private long lastErrorCount;
+    private long lastCpuNanos;
+    private long lastAllocatedBytes;
+
+    LoadGenerator(CompletionProvider provider, List<String> prompts, Options options) {
+        this.provider = provider;
+        this.prompts = prompts;
+        this.options = options;
+        this.intervalFirstTokenLatencies = new LatencyRecorder();
+        this.intervalTotalLatencies = new LatencyRecorder();
+        this.firstTokenLatencies = new LatencyRecorder();
+        this.totalLatencies = new LatencyRecorder();
+        this.sentCount = new AtomicLong();
+        this.completedCount = new AtomicLong();
+        this.errorCount = new AtomicLong();
+        this.inFlightCount = new AtomicLong();
+        this.osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        String apiToken = Optional.ofNullable(System.getenv("COMPLETION_API_TOKEN")).orElse("stub");
+        List<String> prompts = options.promptsPath() == null ? DEFAULT_PROMPTS : loadPrompts(options.promptsPath());
+        try (StubServerProcess stub = options.stub() ? new StubServerProcess(options.stubFirstTokenDelay(), options.stubInterTokenDelay()) : null) {
+            URI baseUri = stub != null ? stub.getBaseUri() : options.endpoint();
+            CompletionProvider provider = CompletionProvider.create(apiToken, options.type(), baseUri);
+            new LoadGenerator(provider, prompts, options).run();
+        }
+    }
+
+    Summary run() throws InterruptedException {
+        long intervalNanos = (long) (1e9 / options.rate());
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        lastCpuNanos = osBean.getProcessCpuTime();
+        lastAllocatedBytes = threadBean.getTotalThreadAllocatedBytes();
+        long endNanos = startNanos + options.duration().toNanos();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        long reportIntervalNanos = options.reportInterval().toNanos();
+        reporter.scheduleAtFixedRate(this::reportInterval, reportIntervalNanos, reportIntervalNanos, TimeUnit.NANOSECONDS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                // latency is measured from the intended send time, so a stalled generator cannot hide queueing delay
+                long intendedNanos = startNanos + i * intervalNanos;
+                if (intendedNanos >= endNanos) {
+                    break;
+                }
+                long waitNanos;
+                while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                String prompt = prompts.get((int) (i % prompts.size()));
+                executor.execute(() -> issue(prompt, intendedNanos));
+            }
+            long drainDeadlineNanos = System.nanoTime() + options.drainTimeout().toNanos();
+            while (inFlightCount.get() > 0 && System.nanoTime() < drainDeadlineNanos) {
+                Thread.sleep(10L);
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+        reportInterval();
+        return reportSummary();
+    }
+
+    private void issue(String prompt, long intendedNanos) {
+        CompletionRequest request = new CompletionRequest(prompt,
+                new TerminationConfig(options.maxTokens(), new String[0]),
+                new SamplingConfig(1.0, 1.0));
+        sentCount.incrementAndGet();
+        inFlightCount.incrementAndGet();
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, Flow.defaultBufferSize());
+        publisher.subscribe(new RequestSubscriber(intendedNanos));
+        try {
+            provider.complete(request, publisher);
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+        }
+    }
+
+    private synchronized void reportInterval() {
+        long nowNanos = System.nanoTime();
+        double intervalSeconds = Math.max(nowNanos - lastReportNanos, 1L) / 1e9;
+        long completed = completedCount.get();
+        long errors = errorCount.get();
+        long intervalCompleted = completed - lastCompletedCount;
+        long intervalErrors = errors - lastErrorCount;
+        long cpuNanos = osBean.getProcessCpuTime();
+        long allocatedBytes = threadBean.getTotalThreadAllocatedBytes();
+        double cpuPercent = 100.0 * (cpuNanos - lastCpuNanos) / (intervalSeconds * 1e9 * Runtime.getRuntime().availableProcessors());
+        double allocationRate = (allocatedBytes - lastAllocatedBytes) / intervalSeconds / (1024.0 * 1024.0);
+        long[] intervalFirstToken = intervalFirstTokenLatencies.drain();
+        long[] intervalTotal = intervalTotalLatencies.drain();
+        Arrays.stream(intervalFirstToken).forEach(firstTokenLatencies::record);
+        Arrays.stream(intervalTotal).forEach(totalLatencies::record);
+        System.out.printf(Locale.ROOT, "[%7.1fs] sent=%d completed=%d errors=%d in-flight=%d throughput=%.1f/s error-rate=%.2f%% cpu=%.1f%% alloc=%.1fMB/s%n",
+                (nowNanos - startNanos) / 1e9, sentCount.get(), completed, errors, inFlightCount.get(),
+                intervalCompleted / intervalSeconds, errorRate(intervalCompleted, intervalErrors), cpuPercent, allocationRate);
+        System.out.println("           first token: " + formatPercentiles(intervalFirstToken));
+        System.out.println("           total:       " + formatPercentiles(intervalTotal));
+        lastReportNanos = nowNanos;
+        lastCompletedCount = completed;
+        lastErrorCount = errors;
+        lastCpuNanos = cpuNanos;
+        lastAllocatedBytes = allocatedBytes;
+    }
+
+    private Summary reportSummary() {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        long completed = completedCount.get();
+        long errors = errorCount.get();
+        long[] firstToken = firstTokenLatencies.drain();
+        long[] total = totalLatencies.drain();
+        System.out.printf(Locale.ROOT, "summary: target=%.1f/s achieved=%.1f/s sent=%d completed=%d errors=%d error-rate=%.2f%% unfinished=%d%n",
+                options.rate(), completed / elapsedSeconds, sentCount.get(), completed, errors,
+                errorRate(completed, errors), inFlightCount.get());
+        System.out.println("  first token: " + formatPercentiles(firstToken));
+        System.out.println("  total:       " + formatPercentiles(total));
+        return new Summary(sentCount.get(), completed, errors, firstToken, total);
+    }
+
+    private static double errorRate(long completed, long errors) {
+        long finished = completed + errors;
+        return finished == 0 ? 0.0 : 100.0 * errors / finished;
+    }
+
+    private static String formatPercentiles(long[] samples) {
+        Arrays.sort(samples);
+        StringBuilder sb = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            String label = percentile == 1.0 ? "max" : "p" + String.valueOf(percentile * 100).replaceAll("\\.0$", "");
+            sb.append(String.format(Locale.ROOT, "%s=%.1fms ", label, LatencyRecorder.percentile(samples, percentile) / 1e6));
+        }
+        return sb.append("n=").append(samples.length).toString();
+    }
+
+    private static List<String> loadPrompts(Path path) throws IOException {
+        List<String> prompts = Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isBlank())
+                .toList();
+        if (prompts.isEmpty()) {
+            throw new IllegalArgumentException("prompt corpus is empty: " + path);
+        }
+        return prompts;
+    }
+
+    private class RequestSubscriber implements Flow.Subscriber<String> {
+
+        private final long intendedNanos;
+        private boolean receivedFirstToken;
+
+        private RequestSubscriber(long intendedNanos) {
+            this.intendedNanos = intendedNanos;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String item) {
+            if (!receivedFirstToken) {
+                receivedFirstToken = true;
+                intervalFirstTokenLatencies.record(System.nanoTime() - intendedNanos);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errorCount.incrementAndGet();
+            inFlightCount.decrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            intervalTotalLatencies.record(System.nanoTime() - intendedNanos);
+            completedCount.incrementAndGet();
+            inFlightCount.decrementAndGet();
+        }
+    }
+
+    // latencies are sorted in nanoseconds, measured from each request's intended send time
+    record Summary(long sentCount, long completedCount, long errorCount, long[] firstTokenLatencies, long[] totalLatencies) {
+    }
+
+    record Options(CompletionProvider.Type type,
+                   double rate,
+                   Duration duration,
+                   Duration reportInterval,
+                   Duration drainTimeout,
+                   int maxTokens,
+                   Path promptsPath,
+                   URI endpoint,
+                   boolean stub,
+                   Duration stubFirstTokenDelay,
+                   Duration stubInterTokenDelay) {
+
+        static Options parse(String[] args) {
+            CompletionProvider.Type type = CompletionProvider.Type.OPENAI_ADA;
+            double rate = 10.0;
+            Duration duration = Duration.ofSeconds(30);
+            Duration reportInterval = Duration.ofSeconds(5);
+            Duration drainTimeout = Duration.ofSeconds(30);
+            int maxTokens = 16;
+            Path promptsPath = null;
+            URI endpoint = null;
+            boolean stub = false;
+            Duration stubFirstTokenDelay = Duration.ofMillis(200);
+            Duration stubInterTokenDelay = Duration.ofMillis(20);
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if ("--stub".equals(name)) {
+                    stub = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value for option: " + name);
+                }
+                String value = args[++i];
+                switch (name) {
+                    case "--type" -> type = CompletionProvider.Type.valueOf(value);
+                    case "--rate" -> rate = Double.parseDouble(value);
+                    case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                    case "--interval" -> reportInterval = Duration.ofSeconds(Long.parseLong(value));
+                    case "--drain" -> drainTimeout = Duration.ofSeconds(Long.parseLong(value));
+                    case "--max-tokens" -> maxTokens = Integer.parseInt(value);
+                    case "--prompts" -> promptsPath = Path.of(value);
+                    case "--endpoint" -> endpoint = URI.create(value);
+                    case "--stub-first-token-ms" -> stubFirstTokenDelay = Duration.ofMillis(Long.parseLong(value));
+                    case "--stub-token-ms" -> stubInterTokenDelay = Duration.ofMillis(Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("unknown option: " + name);
+                }
+            }
+            if (rate <= 0.0) {
+                throw new IllegalArgumentException("rate must be positive");
+            }
+            return new Options(type, rate, duration, reportInterval, drainTimeout, maxTokens, promptsPath, endpoint, stub, stubFirstTokenDelay, stubInterTokenDelay);
+        }
+    }
+}
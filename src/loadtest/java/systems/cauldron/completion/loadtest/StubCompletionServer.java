@@ -0,0 +1,145 @@
+package systems.cauldron.completion.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+class StubCompletionServer implements AutoCloseable {
+
+    private static final String STUB_TOKEN = " stub";
+
+    private final HttpServer server;
+    private final Duration firstTokenDelay;
+    private final Duration interTokenDelay;
+
+    StubCompletionServer(Duration firstTokenDelay, Duration interTokenDelay) throws IOException {
+        this.firstTokenDelay = firstTokenDelay;
+        this.interTokenDelay = interTokenDelay;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    // run as its own process so the load generator's CPU and allocation figures exclude the stub's work;
+    // the stub reports its address on stdout and exits once the parent closes its stdin
+    public static void main(String[] args) throws IOException {
+        Duration firstTokenDelay = Duration.ofMillis(Long.parseLong(args[0]));
+        Duration interTokenDelay = Duration.ofMillis(Long.parseLong(args[1]));
+        try (StubCompletionServer server = new StubCompletionServer(firstTokenDelay, interTokenDelay)) {
+            System.out.println(server.getBaseUri());
+            System.out.flush();
+            System.in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    URI getBaseUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonObject request;
+            try (JsonReader reader = Json.createReader(exchange.getRequestBody())) {
+                request = reader.readObject();
+            }
+            sleep(firstTokenDelay);
+            if (exchange.getRequestURI().getPath().endsWith("/complete")) {
+                writeAi21Response(exchange, request);
+            } else {
+                writeStreamingResponse(exchange, request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeStreamingResponse(HttpExchange exchange, JsonObject request) throws IOException, InterruptedException {
+        int tokenCount = request.getInt("max_tokens", 16);
+        int choiceCount = request.getInt("n", 1);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream os = exchange.getResponseBody();
+        for (int i = 0; i < tokenCount; i++) {
+            if (i > 0) {
+                sleep(interTokenDelay);
+            }
+            for (int choice = 0; choice < choiceCount; choice++) {
+                JsonObject chunk = Json.createObjectBuilder()
+                        .add("choices", Json.createArrayBuilder()
+                                .add(Json.createObjectBuilder()
+                                        .add("text", STUB_TOKEN)
+                                        .add("index", choice)))
+                        .build();
+                os.write(("data: " + serializeJson(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+            os.flush();
+        }
+        os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeAi21Response(HttpExchange exchange, JsonObject request) throws IOException, InterruptedException {
+        int tokenCount = request.getInt("maxTokens", 16);
+        int choiceCount = request.getInt("numResults", 1);
+        sleep(interTokenDelay.multipliedBy(Math.max(tokenCount - 1, 0)));
+        JsonArrayBuilder tokens = Json.createArrayBuilder();
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add(Json.createObjectBuilder()
+                    .add("generatedToken", Json.createObjectBuilder()
+                            .add("token", STUB_TOKEN))
+                    .add("textRange", Json.createObjectBuilder()
+                            .add("start", i * STUB_TOKEN.length())
+                            .add("end", (i + 1) * STUB_TOKEN.length())));
+        }
+        JsonObject completion = Json.createObjectBuilder()
+                .add("data", Json.createObjectBuilder()
+                        .add("text", STUB_TOKEN.repeat(tokenCount))
+                        .add("tokens", tokens))
+                .add("finishReason", Json.createObjectBuilder()
+                        .add("reason", "length"))
+                .build();
+        JsonArrayBuilder completions = Json.createArrayBuilder();
+        for (int i = 0; i < choiceCount; i++) {
+            completions.add(completion);
+        }
+        byte[] payload = serializeJson(Json.createObjectBuilder()
+                .add("completions", completions)
+                .build())
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, payload.length);
+        exchange.getResponseBody().write(payload);
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        if (!duration.isZero()) {
+            Thread.sleep(duration);
+        }
+    }
+
+    private static String serializeJson(JsonObject jsonObject) {
+        StringWriter writer = new StringWriter();
+        try (JsonWriter jsonWriter = Json.createWriter(writer)) {
+            jsonWriter.write(jsonObject);
+        }
+        return writer.toString();
+    }
+}
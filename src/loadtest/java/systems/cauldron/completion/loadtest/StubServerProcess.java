@@ -0,0 +1,48 @@
+package systems.cauldron.completion.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+class StubServerProcess implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+    private final Process process;
+    private final URI baseUri;
+
+    StubServerProcess(Duration firstTokenDelay, Duration interTokenDelay) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        this.process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                StubCompletionServer.class.getName(),
+                String.valueOf(firstTokenDelay.toMillis()),
+                String.valueOf(interTokenDelay.toMillis()))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null) {
+            process.destroyForcibly();
+            throw new IOException("stub completion server exited before reporting its address");
+        }
+        this.baseUri = URI.create(line.trim());
+    }
+
+    URI getBaseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        process.getOutputStream().close();
+        if (!process.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
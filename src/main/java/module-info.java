@@ -3,4 +3,7 @@ module systems.cauldron.completion {
     requires java.json;
     exports systems.cauldron.completion;
     exports systems.cauldron.completion.config;
+    exports systems.cauldron.completion.tokenizer;
+    exports systems.cauldron.completion.batch;
+    exports systems.cauldron.completion.concurrent;
 }
\ No newline at end of file
@@ -1,17 +1,31 @@
 package systems.cauldron.completion;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class CompletionMeter {
 
+    private final List<CompletionMeter> parents;
     private final AtomicLong requestCount;
     private final AtomicLong sentTokenCount;
     private final AtomicLong receivedTokenCount;
+    private final Map<Integer, AtomicLong> choiceReceivedTokenCounts;
+    private final AtomicLong expiredCount;
+    private final AtomicLong timedOutCount;
+    private final AtomicLong resumedCount;
 
-    public CompletionMeter() {
+    // counts added to this meter are also added to each of its parents
+    public CompletionMeter(CompletionMeter... parents) {
+        this.parents = List.of(parents);
         this.requestCount = new AtomicLong();
         this.sentTokenCount = new AtomicLong();
         this.receivedTokenCount = new AtomicLong();
+        this.choiceReceivedTokenCounts = new ConcurrentHashMap<>();
+        this.expiredCount = new AtomicLong();
+        this.timedOutCount = new AtomicLong();
+        this.resumedCount = new AtomicLong();
     }
 
     public long getRequestCount() {
@@ -26,15 +40,56 @@ public class CompletionMeter {
         return receivedTokenCount.get();
     }
 
+    public long getReceivedTokenCount(int choiceIndex) {
+        AtomicLong count = choiceReceivedTokenCounts.get(choiceIndex);
+        return count == null ? 0L : count.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    public long getResumedCount() {
+        return resumedCount.get();
+    }
+
     public void addRequestCount(long count) {
         requestCount.addAndGet(count);
+        parents.forEach(parent -> parent.addRequestCount(count));
     }
 
     public void addSentTokenCount(long count) {
         sentTokenCount.addAndGet(count);
+        parents.forEach(parent -> parent.addSentTokenCount(count));
     }
 
     public void addReceivedTokenCount(long count) {
         receivedTokenCount.addAndGet(count);
+        parents.forEach(parent -> parent.addReceivedTokenCount(count));
+    }
+
+    public void addReceivedTokenCount(int choiceIndex, long count) {
+        receivedTokenCount.addAndGet(count);
+        choiceReceivedTokenCounts.computeIfAbsent(choiceIndex, index -> new AtomicLong()).addAndGet(count);
+        parents.forEach(parent -> parent.addReceivedTokenCount(choiceIndex, count));
+    }
+
+    public void addExpiredCount(long count) {
+        expiredCount.addAndGet(count);
+        parents.forEach(parent -> parent.addExpiredCount(count));
+    }
+
+    public void addTimedOutCount(long count) {
+        timedOutCount.addAndGet(count);
+        parents.forEach(parent -> parent.addTimedOutCount(count));
+    }
+
+    public void addResumedCount(long count) {
+        resumedCount.addAndGet(count);
+        parents.forEach(parent -> parent.addResumedCount(count));
     }
 }
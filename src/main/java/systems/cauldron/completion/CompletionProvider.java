@@ -5,7 +5,17 @@ import systems.cauldron.completion.provider.Ai21CompletionProvider;
 import systems.cauldron.completion.provider.GooseAiCompletionProvider;
 import systems.cauldron.completion.provider.OpenAiCompletionProvider;
 
+import java.net.URI;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class CompletionProvider {
 
@@ -31,23 +41,28 @@ public abstract class CompletionProvider {
     protected final CompletionMeter meter = new CompletionMeter();
 
     public static CompletionProvider create(String apiToken, Type type) {
+        return create(apiToken, type, null);
+    }
+
+    // a null base URI selects the provider's public endpoint
+    public static CompletionProvider create(String apiToken, Type type, URI baseUri) {
         return switch (type) {
-            case OPENAI_DAVINCI -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.DAVINCI);
-            case OPENAI_CURIE -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.CURIE);
-            case OPENAI_BABBAGE -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.BABBAGE);
-            case OPENAI_ADA -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.ADA);
-            case AI21_J1_LARGE -> new Ai21CompletionProvider(apiToken, Ai21CompletionProvider.Engine.J1_LARGE);
-            case AI21_J1_JUMBO -> new Ai21CompletionProvider(apiToken, Ai21CompletionProvider.Engine.J1_JUMBO);
-            case GOOSEAI_GPT_J_6B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_J_6B);
-            case GOOSEAI_GPT_NEO_20B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_20B);
-            case GOOSEAI_GPT_NEO_2_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_2_7B);
-            case GOOSEAI_GPT_NEO_1_3B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_1_3B);
-            case GOOSEAI_GPT_NEO_125M -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_125M);
-            case GOOSEAI_FAIRSEQ_13B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_13B);
-            case GOOSEAI_FAIRSEQ_6_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_6_7B);
-            case GOOSEAI_FAIRSEQ_2_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_2_7B);
-            case GOOSEAI_FAIRSEQ_1_3B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_1_3B);
-            case GOOSEAI_FAIRSEQ_125M -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_125M);
+            case OPENAI_DAVINCI -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.DAVINCI, baseUri);
+            case OPENAI_CURIE -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.CURIE, baseUri);
+            case OPENAI_BABBAGE -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.BABBAGE, baseUri);
+            case OPENAI_ADA -> new OpenAiCompletionProvider(apiToken, OpenAiCompletionProvider.Engine.ADA, baseUri);
+            case AI21_J1_LARGE -> new Ai21CompletionProvider(apiToken, Ai21CompletionProvider.Engine.J1_LARGE, baseUri);
+            case AI21_J1_JUMBO -> new Ai21CompletionProvider(apiToken, Ai21CompletionProvider.Engine.J1_JUMBO, baseUri);
+            case GOOSEAI_GPT_J_6B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_J_6B, baseUri);
+            case GOOSEAI_GPT_NEO_20B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_20B, baseUri);
+            case GOOSEAI_GPT_NEO_2_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_2_7B, baseUri);
+            case GOOSEAI_GPT_NEO_1_3B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_1_3B, baseUri);
+            case GOOSEAI_GPT_NEO_125M -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.GPT_NEO_125M, baseUri);
+            case GOOSEAI_FAIRSEQ_13B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_13B, baseUri);
+            case GOOSEAI_FAIRSEQ_6_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_6_7B, baseUri);
+            case GOOSEAI_FAIRSEQ_2_7B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_2_7B, baseUri);
+            case GOOSEAI_FAIRSEQ_1_3B -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_1_3B, baseUri);
+            case GOOSEAI_FAIRSEQ_125M -> new GooseAiCompletionProvider(apiToken, GooseAiCompletionProvider.Engine.FAIRSEQ_125M, baseUri);
         };
     }
 
@@ -55,5 +70,59 @@ public abstract class CompletionProvider {
         return meter;
     }
 
-    public abstract void complete(CompletionRequest request, SubmissionPublisher<String> completionTokenHandler);
+    public String complete(CompletionRequest request) {
+        StringBuilder completion = new StringBuilder();
+        SubmissionPublisher<String> publisher = createDirectPublisher();
+        CompletableFuture<Void> consumer = publisher.consume(completion::append);
+        CompletableFuture<Void> cancellation = new CompletableFuture<>();
+        complete(request, List.of(publisher), meter, cancellation);
+        try {
+            consumer.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            // an interrupted caller no longer wants the completion, so its exchange is aborted rather than left generating
+            cancellation.complete(null);
+            consumer.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        return completion.toString();
+    }
+
+    public Stream<String> stream(CompletionRequest request) {
+        CompletionTokenIterator iterator = new CompletionTokenIterator();
+        SubmissionPublisher<String> publisher = createDirectPublisher();
+        publisher.subscribe(iterator);
+        CompletableFuture<Void> cancellation = new CompletableFuture<>();
+        complete(request, List.of(publisher), meter, cancellation);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    iterator.cancel();
+                    cancellation.complete(null);
+                });
+    }
+
+    public void complete(CompletionRequest request, SubmissionPublisher<String> completionTokenHandler) {
+        complete(request, List.of(completionTokenHandler));
+    }
+
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers) {
+        complete(request, completionTokenHandlers, meter);
+    }
+
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter) {
+        complete(request, completionTokenHandlers, callMeter, new CompletableFuture<>());
+    }
+
+    // a call's counts are recorded only into the call meter, which must be getMeter() itself
+    // or a meter created with getMeter() among its ancestors, so that the provider totals stay complete;
+    // completing the cancellation aborts the call's exchange and closes its handlers with a CancellationException
+    public abstract void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                                  CompletableFuture<Void> cancellation);
+
+    // tokens are handed to the subscriber on the thread that receives them, which is all a blocking caller needs
+    private static SubmissionPublisher<String> createDirectPublisher() {
+        return new SubmissionPublisher<>(Runnable::run, Flow.defaultBufferSize());
+    }
 }
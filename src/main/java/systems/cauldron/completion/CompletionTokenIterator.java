@@ -0,0 +1,81 @@
+package systems.cauldron.completion;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+class CompletionTokenIterator implements Flow.Subscriber<String>, Iterator<String> {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> items;
+    private volatile Flow.Subscription subscription;
+    private Object next;
+
+    CompletionTokenIterator() {
+        this.items = new LinkedBlockingQueue<>();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String item) {
+        items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        items.add(new Failure(throwable));
+        items.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        items.add(END);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = items.take();
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+        if (next instanceof Failure failure) {
+            next = END;
+            throw new CompletionException(failure.throwable());
+        }
+        return next != END;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String item = (String) next;
+        next = null;
+        return item;
+    }
+
+    void cancel() {
+        Flow.Subscription subscription = this.subscription;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private record Failure(Throwable throwable) {
+    }
+}
@@ -0,0 +1,12 @@
+package systems.cauldron.completion.batch;
+
+import java.time.Duration;
+
+public record BulkCompletionProgress(long completedCount,
+                                     long processedByteCount,
+                                     long inputByteCount,
+                                     Duration elapsed,
+                                     double requestsPerSecond,
+                                     double receivedTokensPerSecond,
+                                     Duration estimatedRemaining) {
+}
@@ -0,0 +1,317 @@
+package systems.cauldron.completion.batch;
+
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
+
+public class BulkCompletionRunner {
+
+    private static final int WINDOW_SIZE_FACTOR = 4;
+    private static final double DEFAULT_TEMPERATURE = 1.0;
+    private static final double DEFAULT_TOP_P = 1.0;
+
+    private final CompletionProvider provider;
+    private final int concurrency;
+    private final int windowSize;
+    private final Duration checkpointInterval;
+    private final Consumer<BulkCompletionProgress> progressListener;
+    private final CompletionMeter meter;
+
+    public BulkCompletionRunner(CompletionProvider provider, int concurrency, Duration checkpointInterval, Consumer<BulkCompletionProgress> progressListener) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.provider = provider;
+        this.concurrency = concurrency;
+        this.windowSize = concurrency * WINDOW_SIZE_FACTOR;
+        this.checkpointInterval = checkpointInterval;
+        this.progressListener = progressListener;
+        this.meter = new CompletionMeter(provider.getMeter());
+    }
+
+    // counts only the completions started by this runner, while the provider meter keeps counting everything
+    public CompletionMeter getMeter() {
+        return meter;
+    }
+
+    // progress is measured in input bytes against the file size, so the input is read only once
+    public void run(Path inputPath, Path outputPath, Path checkpointPath) {
+        Checkpoint checkpoint = Checkpoint.read(checkpointPath);
+        try (BufferedReader reader = Files.newBufferedReader(inputPath, StandardCharsets.UTF_8);
+             FileChannel outputChannel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // anything written past the last checkpoint belongs to requests that will be executed again
+            outputChannel.truncate(checkpoint.outputPosition());
+            outputChannel.position(checkpoint.outputPosition());
+            long inputPosition = 0L;
+            for (long i = 0; i < checkpoint.completedCount(); i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new RuntimeException("checkpoint is ahead of input file: " + inputPath);
+                }
+                inputPosition += getLineByteCount(line);
+            }
+            Semaphore inFlight = new Semaphore(concurrency);
+            Semaphore window = new Semaphore(windowSize);
+            OrderedOutput output = new OrderedOutput(outputChannel, checkpointPath, checkpoint, inputPosition, Files.size(inputPath), window);
+            long sequence = checkpoint.completedCount();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                window.acquire();
+                inFlight.acquire();
+                output.verify();
+                long lineSequence = sequence++;
+                long lineEnd = inputPosition += getLineByteCount(line);
+                execute(lineSequence, line).thenAccept(record -> {
+                    inFlight.release();
+                    output.write(lineSequence, new PendingRecord(record, lineEnd));
+                });
+            }
+            window.acquire(windowSize);
+            output.finish();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private CompletableFuture<String> execute(long sequence, String line) {
+        if (line.isBlank()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        JsonValue id = Json.createValue(sequence);
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, Flow.defaultBufferSize());
+        try {
+            JsonObject item;
+            try (JsonReader reader = Json.createReader(new StringReader(line))) {
+                item = reader.readObject();
+            }
+            id = item.getOrDefault("id", id);
+            CompletionRequest request = parseRequest(item);
+            StringBuilder completion = new StringBuilder();
+            CompletableFuture<Void> consumer = publisher.consume(completion::append);
+            provider.complete(request, List.of(publisher), meter);
+            JsonValue resultId = id;
+            return consumer.handle((result, throwable) -> throwable == null
+                    ? buildSuccessRecord(resultId, completion.toString())
+                    : buildFailureRecord(resultId, throwable));
+        } catch (RuntimeException e) {
+            publisher.close();
+            return CompletableFuture.completedFuture(buildFailureRecord(id, e));
+        }
+    }
+
+    private static CompletionRequest parseRequest(JsonObject item) {
+        String prompt = item.getString("prompt");
+        int maxTokens = item.getInt("maxTokens");
+        JsonArray jsonStopSequences = item.getJsonArray("stopSequences");
+        String[] stopSequences = jsonStopSequences == null
+                ? new String[0]
+                : jsonStopSequences.getValuesAs(JsonString.class).stream()
+                .map(JsonString::getString)
+                .toArray(String[]::new);
+        double temperature = item.containsKey("temperature")
+                ? item.getJsonNumber("temperature").doubleValue()
+                : DEFAULT_TEMPERATURE;
+        double topP = item.containsKey("topP")
+                ? item.getJsonNumber("topP").doubleValue()
+                : DEFAULT_TOP_P;
+        return new CompletionRequest(prompt, new TerminationConfig(maxTokens, stopSequences), new SamplingConfig(temperature, topP));
+    }
+
+    private static String buildSuccessRecord(JsonValue id, String completion) {
+        return serializeJson(Json.createObjectBuilder()
+                .add("id", id)
+                .add("completion", completion)
+                .build());
+    }
+
+    private static String buildFailureRecord(JsonValue id, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        return serializeJson(Json.createObjectBuilder()
+                .add("id", id)
+                .add("error", String.valueOf(cause.getMessage()))
+                .build());
+    }
+
+    private static String serializeJson(JsonObject jsonObject) {
+        StringWriter writer = new StringWriter();
+        try (JsonWriter jsonWriter = Json.createWriter(writer)) {
+            jsonWriter.write(jsonObject);
+        }
+        return writer.toString();
+    }
+
+    // the line ending is counted as a single byte, which only skews the estimate for input with CRLF line endings
+    private static long getLineByteCount(String line) {
+        return line.getBytes(StandardCharsets.UTF_8).length + 1L;
+    }
+
+    private record Checkpoint(long completedCount, long outputPosition) {
+
+        private static Checkpoint read(Path path) {
+            if (!Files.exists(path)) {
+                return new Checkpoint(0L, 0L);
+            }
+            try {
+                String[] fields = Files.readString(path, StandardCharsets.UTF_8).trim().split(" ");
+                if (fields.length != 2) {
+                    throw new RuntimeException("malformed checkpoint file: " + path);
+                }
+                return new Checkpoint(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void write(Path path) throws IOException {
+            Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+            ByteBuffer buffer = ByteBuffer.wrap((completedCount + " " + outputPosition).getBytes(StandardCharsets.UTF_8));
+            // the contents must be durable before the rename, or a crash could leave an empty checkpoint in place
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private record PendingRecord(String record, long inputPosition) {
+    }
+
+    private class OrderedOutput {
+
+        private final FileChannel channel;
+        private final OutputStream stream;
+        private final Path checkpointPath;
+        private final long inputByteCount;
+        private final Semaphore window;
+        private final Map<Long, PendingRecord> pendingRecords;
+        private final long startCompletedCount;
+        private final long startInputPosition;
+        private final long startNanos;
+
+        private long nextSequence;
+        private long position;
+        private long inputPosition;
+        private long lastCheckpointNanos;
+        private volatile IOException failure;
+
+        private OrderedOutput(FileChannel channel, Path checkpointPath, Checkpoint checkpoint, long inputPosition, long inputByteCount,
+                              Semaphore window) {
+            this.channel = channel;
+            this.stream = new BufferedOutputStream(Channels.newOutputStream(channel));
+            this.checkpointPath = checkpointPath;
+            this.inputByteCount = inputByteCount;
+            this.window = window;
+            this.pendingRecords = new HashMap<>();
+            this.startCompletedCount = checkpoint.completedCount();
+            this.startInputPosition = inputPosition;
+            this.startNanos = System.nanoTime();
+            this.nextSequence = checkpoint.completedCount();
+            this.position = checkpoint.outputPosition();
+            this.inputPosition = inputPosition;
+            this.lastCheckpointNanos = startNanos;
+        }
+
+        private synchronized void write(long sequence, PendingRecord record) {
+            pendingRecords.put(sequence, record);
+            while (pendingRecords.containsKey(nextSequence)) {
+                PendingRecord nextRecord = pendingRecords.remove(nextSequence);
+                nextSequence++;
+                inputPosition = nextRecord.inputPosition();
+                window.release();
+                if (failure == null && nextRecord.record() != null) {
+                    try {
+                        byte[] bytes = (nextRecord.record() + "\n").getBytes(StandardCharsets.UTF_8);
+                        stream.write(bytes);
+                        position += bytes.length;
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure == null && System.nanoTime() - lastCheckpointNanos >= checkpointInterval.toNanos()) {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        private synchronized void finish() throws IOException {
+            verify();
+            checkpoint();
+        }
+
+        private void verify() throws IOException {
+            IOException failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void checkpoint() throws IOException {
+            stream.flush();
+            channel.force(false);
+            new Checkpoint(nextSequence, position).write(checkpointPath);
+            lastCheckpointNanos = System.nanoTime();
+            progressListener.accept(computeProgress());
+        }
+
+        private BulkCompletionProgress computeProgress() {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+            double elapsedSeconds = Math.max(elapsed.toNanos(), 1L) / 1e9;
+            double requestsPerSecond = (nextSequence - startCompletedCount) / elapsedSeconds;
+            double receivedTokensPerSecond = meter.getReceivedTokenCount() / elapsedSeconds;
+            double bytesPerSecond = (inputPosition - startInputPosition) / elapsedSeconds;
+            long processedByteCount = Math.min(inputPosition, inputByteCount);
+            Duration estimatedRemaining = bytesPerSecond > 0.0
+                    ? Duration.ofMillis((long) ((inputByteCount - processedByteCount) / bytesPerSecond * 1000.0))
+                    : null;
+            return new BulkCompletionProgress(nextSequence, processedByteCount, inputByteCount, elapsed, requestsPerSecond, receivedTokensPerSecond,
+                    estimatedRemaining);
+        }
+    }
+}
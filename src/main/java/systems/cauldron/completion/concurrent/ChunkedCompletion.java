@@ -0,0 +1,101 @@
+package systems.cauldron.completion.concurrent;
+
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.ChunkingConfig;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.tokenizer.DocumentChunker;
+import systems.cauldron.completion.tokenizer.Tokenizer;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+public class ChunkedCompletion {
+
+    private final CompletionProvider provider;
+    private final Tokenizer tokenizer;
+    private final int concurrency;
+    private final ChunkingConfig config;
+
+    public ChunkedCompletion(CompletionProvider provider, Tokenizer tokenizer, int concurrency, ChunkingConfig config) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.provider = provider;
+        this.tokenizer = tokenizer;
+        this.concurrency = concurrency;
+        this.config = config;
+    }
+
+    public <R> R mapReduce(Reader document, String promptTemplate, TerminationConfig terminationConfig, SamplingConfig samplingConfig,
+                           Function<List<String>, R> reducer) {
+        List<CompletionResult> results = map(document, promptTemplate, terminationConfig, samplingConfig);
+        List<String> completions = new ArrayList<>(results.size());
+        for (CompletionResult result : results) {
+            if (!result.isSuccessful()) {
+                throw new CompletionException(result.failure());
+            }
+            completions.add(result.completion());
+        }
+        return reducer.apply(completions);
+    }
+
+    // chunks are read only as fast as completions free up permits, so at most one chunk per permit is held in memory;
+    // the document reader belongs to the caller and is left open
+    public List<CompletionResult> map(Reader document, String promptTemplate, TerminationConfig terminationConfig, SamplingConfig samplingConfig) {
+        int promptTokenLimit = config.contextTokenLimit() - terminationConfig.maxTokens();
+        int templateTokenCount = tokenizer.tokenize(String.format(promptTemplate, "")).size();
+        int tokenBudget = promptTokenLimit - templateTokenCount;
+        if (tokenBudget <= config.overlapTokenCount()) {
+            throw new IllegalArgumentException("prompt template and maximum tokens leave no room for document chunks");
+        }
+        List<CompletionResult> results = new ArrayList<>();
+        Semaphore permits = new Semaphore(concurrency);
+        DocumentChunker chunker = new DocumentChunker(tokenizer, document, tokenBudget, config.overlapTokenCount());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (chunker.hasNext()) {
+                String prompt = String.format(promptTemplate, chunker.next());
+                int index;
+                synchronized (results) {
+                    index = results.size();
+                    results.add(null);
+                }
+                // the template and the chunk may tokenize into more than their separate counts where they meet
+                if (tokenizer.exceedsTokenCount(prompt, promptTokenLimit)) {
+                    CompletionResult result = CompletionResult.failure(new IllegalArgumentException("prompt exceeds the context token limit"));
+                    synchronized (results) {
+                        results.set(index, result);
+                    }
+                    continue;
+                }
+                permits.acquire();
+                executor.execute(() -> {
+                    CompletionResult result;
+                    try {
+                        result = CompletionResult.success(provider.complete(new CompletionRequest(prompt, terminationConfig, samplingConfig)));
+                    } catch (CompletionException e) {
+                        result = CompletionResult.failure(e.getCause() != null ? e.getCause() : e);
+                    } catch (RuntimeException e) {
+                        result = CompletionResult.failure(e);
+                    } finally {
+                        permits.release();
+                    }
+                    synchronized (results) {
+                        results.set(index, result);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        return results;
+    }
+}
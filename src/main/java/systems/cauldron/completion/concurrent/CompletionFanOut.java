@@ -0,0 +1,119 @@
+package systems.cauldron.completion.concurrent;
+
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.TimeoutConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class CompletionFanOut {
+
+    public enum FailurePolicy {
+        FAIL_FAST,
+        COLLECT_ALL,
+    }
+
+    private final CompletionProvider provider;
+    private final int concurrency;
+    private final FailurePolicy failurePolicy;
+
+    public CompletionFanOut(CompletionProvider provider, int concurrency, FailurePolicy failurePolicy) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.provider = provider;
+        this.concurrency = concurrency;
+        this.failurePolicy = failurePolicy;
+    }
+
+    public List<CompletionResult> completeAll(List<CompletionRequest> requests) {
+        return completeAll(requests, null);
+    }
+
+    public List<CompletionResult> completeAll(List<CompletionRequest> requests, Instant deadline) {
+        int requestCount = requests.size();
+        CompletionResult[] results = new CompletionResult[requestCount];
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+            List<Future<Integer>> futures = new ArrayList<>(requestCount);
+            for (int i = 0; i < requestCount; i++) {
+                int index = i;
+                futures.add(completionService.submit(() -> {
+                    permits.acquire();
+                    try {
+                        results[index] = CompletionResult.success(provider.complete(withDeadline(requests.get(index), deadline)));
+                    } catch (CompletionException e) {
+                        // a cancelled task leaves its result empty
+                        if (!(e.getCause() instanceof InterruptedException)) {
+                            results[index] = CompletionResult.failure(e.getCause() != null ? e.getCause() : e);
+                        }
+                    } catch (RuntimeException e) {
+                        results[index] = CompletionResult.failure(e);
+                    } finally {
+                        permits.release();
+                    }
+                    return index;
+                }));
+            }
+            try {
+                for (int i = 0; i < requestCount; i++) {
+                    Future<Integer> future = awaitNext(completionService, deadline);
+                    if (future == null) {
+                        futures.forEach(f -> f.cancel(true));
+                        if (failurePolicy == FailurePolicy.FAIL_FAST) {
+                            throw new CompletionException(new TimeoutException("deadline exceeded"));
+                        }
+                        break;
+                    }
+                    CompletionResult result = results[future.get()];
+                    if (failurePolicy == FailurePolicy.FAIL_FAST && !result.isSuccessful()) {
+                        futures.forEach(f -> f.cancel(true));
+                        throw new CompletionException(result.failure());
+                    }
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw new CompletionException(e.getCause());
+            }
+        }
+        return Arrays.stream(results)
+                .map(result -> result != null ? result : CompletionResult.failure(new TimeoutException("deadline exceeded")))
+                .toList();
+    }
+
+    private static CompletionRequest withDeadline(CompletionRequest request, Instant deadline) {
+        TimeoutConfig timeoutConfig = request.timeoutConfig();
+        if (deadline == null || (timeoutConfig.deadline() != null && timeoutConfig.deadline().isBefore(deadline))) {
+            return request;
+        }
+        return new CompletionRequest(request.prompt(), request.terminationConfig(), request.samplingConfig(),
+                new TimeoutConfig(deadline, timeoutConfig.idleTimeout()));
+    }
+
+    private static Future<Integer> awaitNext(CompletionService<Integer> completionService, Instant deadline) throws InterruptedException {
+        if (deadline == null) {
+            return completionService.take();
+        }
+        long remainingNanos = Duration.between(Instant.now(), deadline).toNanos();
+        return completionService.poll(Math.max(remainingNanos, 0L), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,16 @@
+package systems.cauldron.completion.concurrent;
+
+public record CompletionResult(String completion, Throwable failure) {
+
+    public static CompletionResult success(String completion) {
+        return new CompletionResult(completion, null);
+    }
+
+    public static CompletionResult failure(Throwable failure) {
+        return new CompletionResult(null, failure);
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+}
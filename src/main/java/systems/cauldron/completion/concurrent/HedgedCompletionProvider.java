@@ -0,0 +1,280 @@
+package systems.cauldron.completion.concurrent;
+
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.HedgingConfig;
+import systems.cauldron.completion.utility.StreamWatchdog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class HedgedCompletionProvider extends CompletionProvider {
+
+    private static final int LATENCY_WINDOW_SIZE = 1024;
+    private static final int MINIMUM_ADAPTIVE_SAMPLE_COUNT = 32;
+    private static final int DELAY_REFRESH_INTERVAL = 32;
+
+    private final CompletionProvider primary;
+    private final CompletionProvider hedge;
+    private final HedgingConfig config;
+    private final LatencyWindow firstTokenLatencies;
+    private final AtomicLong firstTokenCount;
+    private final AtomicLong callCount;
+    private final AtomicLong hedgeCount;
+    private final AtomicLong hedgeWinCount;
+    private volatile long hedgeDelayNanos;
+
+    public HedgedCompletionProvider(CompletionProvider provider, HedgingConfig config) {
+        this(provider, provider, config);
+    }
+
+    public HedgedCompletionProvider(CompletionProvider primary, CompletionProvider hedge, HedgingConfig config) {
+        if (config.budget() < 0.0 || config.budget() > 1.0) {
+            throw new IllegalArgumentException("hedge budget must be between 0.0 and 1.0");
+        }
+        if (config.delayPercentile() < 0.0 || config.delayPercentile() > 1.0) {
+            throw new IllegalArgumentException("hedge delay percentile must be between 0.0 and 1.0");
+        }
+        // an adaptive delay still needs a starting point until enough first-token latencies are recorded
+        if (config.delay() == null || config.delay().isNegative()) {
+            throw new IllegalArgumentException("an initial hedge delay of zero or more is required");
+        }
+        this.primary = primary;
+        this.hedge = hedge;
+        this.config = config;
+        this.firstTokenLatencies = new LatencyWindow(LATENCY_WINDOW_SIZE);
+        this.firstTokenCount = new AtomicLong();
+        this.callCount = new AtomicLong();
+        this.hedgeCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+        this.hedgeDelayNanos = config.delay().toNanos();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    // every attempt is metered into the call meter as well as the inner provider's own meter,
+    // so this provider reports what its hedges actually cost
+    @Override
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                         CompletableFuture<Void> cancellation) {
+        HedgedCall call = new HedgedCall(completionTokenHandlers, callMeter);
+        call.launch(primary, request, false);
+        callCount.incrementAndGet();
+        cancellation.thenRun(call::cancel);
+        CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (!StreamWatchdog.isExpired(request.timeoutConfig())) {
+                call.launch(hedge, request, true);
+            }
+        });
+    }
+
+    private boolean tryAcquireHedge() {
+        while (true) {
+            long hedges = hedgeCount.get();
+            if (hedges + 1 > config.budget() * callCount.get()) {
+                return false;
+            }
+            if (hedgeCount.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void recordFirstToken(long latencyNanos) {
+        firstTokenLatencies.record(latencyNanos);
+        if (config.delayPercentile() > 0.0) {
+            long count = firstTokenCount.incrementAndGet();
+            if (count >= MINIMUM_ADAPTIVE_SAMPLE_COUNT && count % DELAY_REFRESH_INTERVAL == 0) {
+                hedgeDelayNanos = firstTokenLatencies.percentile(config.delayPercentile());
+            }
+        }
+    }
+
+    private class HedgedCall {
+
+        private final List<SubmissionPublisher<String>> completionTokenHandlers;
+        private final CompletionMeter callMeter;
+        private final long startNanos;
+        private final AtomicReference<Attempt> winner;
+        private final List<Attempt> attempts;
+        private int launchedCount;
+        private int failedCount;
+        private boolean cancelled;
+
+        private HedgedCall(List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter) {
+            this.completionTokenHandlers = completionTokenHandlers;
+            this.callMeter = callMeter;
+            this.startNanos = System.nanoTime();
+            this.winner = new AtomicReference<>();
+            this.attempts = new ArrayList<>();
+        }
+
+        // a hedge is only sent, and only spends the budget, while no attempt has claimed the call;
+        // checking under the lock that cancelLosers takes means a later claim always sees the new attempt
+        private void launch(CompletionProvider provider, CompletionRequest request, boolean isHedge) {
+            Attempt attempt = new Attempt(this, isHedge, completionTokenHandlers.size());
+            synchronized (this) {
+                if (cancelled || isHedge && (winner.get() != null || !tryAcquireHedge())) {
+                    return;
+                }
+                launchedCount++;
+                attempts.add(attempt);
+            }
+            try {
+                provider.complete(request, attempt.publishers, new CompletionMeter(callMeter, provider.getMeter()), attempt.cancellation);
+            } catch (RuntimeException e) {
+                if (!isHedge) {
+                    throw e;
+                }
+                fail(attempt, e);
+            }
+        }
+
+        private boolean claim(Attempt attempt) {
+            Attempt current = winner.get();
+            if (current == null) {
+                if (winner.compareAndSet(null, attempt)) {
+                    recordFirstToken(System.nanoTime() - startNanos);
+                    if (attempt.isHedge) {
+                        hedgeWinCount.incrementAndGet();
+                    }
+                    cancelLosers(attempt);
+                    return true;
+                }
+                current = winner.get();
+            }
+            return current == attempt;
+        }
+
+        private void cancelLosers(Attempt winningAttempt) {
+            List<Attempt> losers;
+            synchronized (this) {
+                losers = new ArrayList<>(attempts);
+            }
+            losers.stream()
+                    .filter(attempt -> attempt != winningAttempt)
+                    .forEach(Attempt::cancel);
+        }
+
+        // the attempts stay subscribed, so the cancellation each provider reports reaches the handlers
+        private void cancel() {
+            List<Attempt> launched;
+            synchronized (this) {
+                cancelled = true;
+                launched = new ArrayList<>(attempts);
+            }
+            launched.forEach(attempt -> attempt.cancellation.complete(null));
+        }
+
+        private void fail(Attempt attempt, Throwable throwable) {
+            if (!attempt.failed.compareAndSet(false, true)) {
+                return;
+            }
+            boolean allFailed;
+            synchronized (this) {
+                failedCount++;
+                allFailed = failedCount == launchedCount;
+            }
+            // a failure is only surfaced once no other attempt can still produce a completion
+            if (allFailed && winner.compareAndSet(null, attempt)) {
+                completionTokenHandlers.forEach(handler -> handler.closeExceptionally(throwable));
+            }
+        }
+    }
+
+    private static class Attempt {
+
+        private final boolean isHedge;
+        private final List<SubmissionPublisher<String>> publishers;
+        private final List<ChoiceSubscriber> subscribers;
+        private final CompletableFuture<Void> cancellation;
+        private final AtomicBoolean failed;
+
+        private Attempt(HedgedCall call, boolean isHedge, int choiceCount) {
+            this.isHedge = isHedge;
+            this.publishers = new ArrayList<>(choiceCount);
+            this.subscribers = new ArrayList<>(choiceCount);
+            this.cancellation = new CompletableFuture<>();
+            this.failed = new AtomicBoolean();
+            for (int i = 0; i < choiceCount; i++) {
+                SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, Flow.defaultBufferSize());
+                ChoiceSubscriber subscriber = new ChoiceSubscriber(call, this, i);
+                publisher.subscribe(subscriber);
+                publishers.add(publisher);
+                subscribers.add(subscriber);
+            }
+        }
+
+        // a losing attempt stops delivering at once and its provider aborts the exchange it owns
+        private void cancel() {
+            subscribers.forEach(ChoiceSubscriber::cancel);
+            cancellation.complete(null);
+        }
+    }
+
+    private static class ChoiceSubscriber implements Flow.Subscriber<String> {
+
+        private final HedgedCall call;
+        private final Attempt attempt;
+        private final int index;
+        private volatile Flow.Subscription subscription;
+
+        private ChoiceSubscriber(HedgedCall call, Attempt attempt, int index) {
+            this.call = call;
+            this.attempt = attempt;
+            this.index = index;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        private void cancel() {
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            if (call.claim(attempt)) {
+                call.completionTokenHandlers.get(index).submit(item);
+            } else {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (call.winner.get() == attempt) {
+                call.completionTokenHandlers.get(index).closeExceptionally(throwable);
+            } else {
+                call.fail(attempt, throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (call.claim(attempt)) {
+                call.completionTokenHandlers.get(index).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package systems.cauldron.completion.concurrent;
+
+import java.util.Arrays;
+
+class LatencyWindow {
+
+    private final long[] samples;
+    private int sampleCount;
+    private int nextIndex;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[nextIndex] = nanos;
+        nextIndex = (nextIndex + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return sampleCount;
+    }
+
+    long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (sampleCount == 0) {
+                return 0L;
+            }
+            sorted = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
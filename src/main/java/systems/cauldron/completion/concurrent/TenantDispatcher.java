@@ -0,0 +1,281 @@
+package systems.cauldron.completion.concurrent;
+
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.TenantConfig;
+import systems.cauldron.completion.tokenizer.Tokenizer;
+import systems.cauldron.completion.utility.StreamWatchdog;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class TenantDispatcher {
+
+    private static final long QUANTUM_TOKEN_COUNT = 1024L;
+
+    private final CompletionProvider provider;
+    private final Tokenizer tokenizer;
+    private final int concurrency;
+    private final Map<String, Tenant> tenants;
+    private final List<Tenant> activeTenants;
+    private final ReentrantLock lock;
+    private int inFlightCount;
+    private int cursor;
+    private boolean turnStarted;
+
+    public TenantDispatcher(CompletionProvider provider, Tokenizer tokenizer, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.provider = provider;
+        this.tokenizer = tokenizer;
+        this.concurrency = concurrency;
+        this.tenants = new ConcurrentHashMap<>();
+        this.activeTenants = new ArrayList<>();
+        this.lock = new ReentrantLock();
+    }
+
+    public void registerTenant(String tenantId, TenantConfig config) {
+        if (config.weight() < 1) {
+            throw new IllegalArgumentException("tenant weight must be at least 1");
+        }
+        if (config.concurrencyLimit() < 1) {
+            throw new IllegalArgumentException("tenant concurrency limit must be at least 1");
+        }
+        if (tenants.putIfAbsent(tenantId, new Tenant(config, new CompletionMeter(provider.getMeter()))) != null) {
+            throw new IllegalArgumentException("tenant is already registered: " + tenantId);
+        }
+    }
+
+    public CompletionMeter getMeter(String tenantId) {
+        return getTenant(tenantId).meter;
+    }
+
+    public void complete(String tenantId, CompletionRequest request, SubmissionPublisher<String> completionTokenHandler) {
+        complete(tenantId, request, List.of(completionTokenHandler));
+    }
+
+    public void complete(String tenantId, CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers) {
+        Tenant tenant = getTenant(tenantId);
+        long promptCost = tokenizer.estimateTokenCount(request.prompt()).estimate();
+        long cost = promptCost + (long) request.terminationConfig().maxTokens() * completionTokenHandlers.size();
+        PendingCompletion pending = new PendingCompletion(tenant, request, completionTokenHandlers, cost);
+        lock.lock();
+        try {
+            if (tenant.queue.isEmpty() && !activeTenants.contains(tenant)) {
+                activeTenants.add(tenant);
+            }
+            tenant.queue.add(pending);
+        } finally {
+            lock.unlock();
+        }
+        Duration remaining = StreamWatchdog.remaining(request.timeoutConfig());
+        if (remaining != null) {
+            // a queued request is dropped at its deadline, even while every slot is busy or other requests are ahead of it
+            long delayNanos = Math.max(remaining.toNanos(), 0L);
+            CompletableFuture.runAsync(() -> expire(pending), CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS));
+        }
+        dispatch();
+    }
+
+    private void expire(PendingCompletion pending) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = pending.tenant.queue.removeIf(queued -> queued == pending);
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            closeExpired(pending);
+        }
+    }
+
+    private Tenant getTenant(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) {
+            throw new IllegalArgumentException("unknown tenant: " + tenantId);
+        }
+        return tenant;
+    }
+
+    private void dispatch() {
+        List<PendingCompletion> dispatched = new ArrayList<>();
+        List<PendingCompletion> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (inFlightCount < concurrency) {
+                PendingCompletion next = selectNext(expired);
+                if (next == null) {
+                    break;
+                }
+                inFlightCount++;
+                next.tenant.inFlightCount++;
+                dispatched.add(next);
+            }
+        } finally {
+            lock.unlock();
+        }
+        expired.forEach(TenantDispatcher::closeExpired);
+        // starting on a fresh thread keeps a provider that rejects or settles a request synchronously
+        // from re-entering the dispatcher through the completion callback
+        dispatched.forEach(pending -> Thread.startVirtualThread(() -> start(pending)));
+    }
+
+    private static void closeExpired(PendingCompletion pending) {
+        pending.tenant.meter.addExpiredCount(1);
+        TimeoutException exception = new TimeoutException("deadline expired while queued");
+        pending.completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+    }
+
+    // deficit round-robin: each turn credits a tenant with its weighted quantum of tokens,
+    // and the tenant keeps dispatching while its head request costs no more than its credit
+    private PendingCompletion selectNext(List<PendingCompletion> expired) {
+        while (hasEligibleTenant()) {
+            if (cursor >= activeTenants.size()) {
+                cursor = 0;
+            }
+            Tenant tenant = activeTenants.get(cursor);
+            PendingCompletion head = tenant.queue.peek();
+            while (head != null && StreamWatchdog.isExpired(head.request.timeoutConfig())) {
+                expired.add(tenant.queue.poll());
+                head = tenant.queue.peek();
+            }
+            if (head == null) {
+                activeTenants.remove(cursor);
+                tenant.deficit = 0L;
+                turnStarted = false;
+                continue;
+            }
+            if (tenant.inFlightCount >= tenant.config.concurrencyLimit()) {
+                endTurn();
+                continue;
+            }
+            if (!turnStarted) {
+                tenant.deficit += QUANTUM_TOKEN_COUNT * tenant.config.weight();
+                turnStarted = true;
+            }
+            if (head.cost <= tenant.deficit) {
+                tenant.deficit -= head.cost;
+                return tenant.queue.poll();
+            }
+            endTurn();
+        }
+        return null;
+    }
+
+    private boolean hasEligibleTenant() {
+        for (Tenant tenant : activeTenants) {
+            if (tenant.inFlightCount < tenant.config.concurrencyLimit() || tenant.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void endTurn() {
+        cursor++;
+        turnStarted = false;
+    }
+
+    private void start(PendingCompletion pending) {
+        List<SubmissionPublisher<String>> publishers = new ArrayList<>(pending.completionTokenHandlers.size());
+        AtomicInteger openChoiceCount = new AtomicInteger(pending.completionTokenHandlers.size());
+        for (SubmissionPublisher<String> handler : pending.completionTokenHandlers) {
+            SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, Flow.defaultBufferSize());
+            publisher.subscribe(new ReleasingSubscriber(pending, handler, openChoiceCount));
+            publishers.add(publisher);
+        }
+        try {
+            provider.complete(pending.request, publishers, pending.tenant.meter);
+        } catch (RuntimeException e) {
+            publishers.forEach(publisher -> publisher.closeExceptionally(e));
+        }
+    }
+
+    private void release(Tenant tenant) {
+        lock.lock();
+        try {
+            inFlightCount--;
+            tenant.inFlightCount--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    private static class Tenant {
+
+        private final TenantConfig config;
+        private final CompletionMeter meter;
+        private final Queue<PendingCompletion> queue;
+        private long deficit;
+        private int inFlightCount;
+
+        private Tenant(TenantConfig config, CompletionMeter meter) {
+            this.config = config;
+            this.meter = meter;
+            this.queue = new ArrayDeque<>();
+        }
+    }
+
+    private record PendingCompletion(Tenant tenant,
+                                     CompletionRequest request,
+                                     List<SubmissionPublisher<String>> completionTokenHandlers,
+                                     long cost) {
+    }
+
+    private class ReleasingSubscriber implements Flow.Subscriber<String> {
+
+        private final PendingCompletion pending;
+        private final SubmissionPublisher<String> completionTokenHandler;
+        private final AtomicInteger openChoiceCount;
+
+        private ReleasingSubscriber(PendingCompletion pending, SubmissionPublisher<String> completionTokenHandler, AtomicInteger openChoiceCount) {
+            this.pending = pending;
+            this.completionTokenHandler = completionTokenHandler;
+            this.openChoiceCount = openChoiceCount;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String item) {
+            completionTokenHandler.submit(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completionTokenHandler.closeExceptionally(throwable);
+            finish();
+        }
+
+        @Override
+        public void onComplete() {
+            completionTokenHandler.close();
+            finish();
+        }
+
+        private void finish() {
+            if (openChoiceCount.decrementAndGet() == 0) {
+                release(pending.tenant);
+            }
+        }
+    }
+}
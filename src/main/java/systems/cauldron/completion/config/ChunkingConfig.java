@@ -0,0 +1,4 @@
+package systems.cauldron.completion.config;
+
+public record ChunkingConfig(int contextTokenLimit, int overlapTokenCount) {
+}
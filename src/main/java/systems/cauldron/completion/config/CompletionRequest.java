@@ -1,4 +1,8 @@
 package systems.cauldron.completion.config;
 
-public record CompletionRequest(String prompt, TerminationConfig terminationConfig, SamplingConfig samplingConfig) {
+public record CompletionRequest(String prompt, TerminationConfig terminationConfig, SamplingConfig samplingConfig, TimeoutConfig timeoutConfig) {
+
+    public CompletionRequest(String prompt, TerminationConfig terminationConfig, SamplingConfig samplingConfig) {
+        this(prompt, terminationConfig, samplingConfig, new TimeoutConfig(null, null));
+    }
 }
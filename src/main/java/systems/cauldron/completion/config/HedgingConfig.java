@@ -0,0 +1,6 @@
+package systems.cauldron.completion.config;
+
+import java.time.Duration;
+
+public record HedgingConfig(Duration delay, double delayPercentile, double budget) {
+}
@@ -0,0 +1,4 @@
+package systems.cauldron.completion.config;
+
+public record TenantConfig(int weight, int concurrencyLimit) {
+}
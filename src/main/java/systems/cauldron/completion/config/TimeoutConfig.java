@@ -0,0 +1,7 @@
+package systems.cauldron.completion.config;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public record TimeoutConfig(Instant deadline, Duration idleTimeout) {
+}
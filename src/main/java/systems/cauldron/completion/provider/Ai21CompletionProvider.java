@@ -1,12 +1,15 @@
 package systems.cauldron.completion.provider;
 
+import systems.cauldron.completion.CompletionMeter;
 import systems.cauldron.completion.CompletionProvider;
 import systems.cauldron.completion.config.CompletionRequest;
 import systems.cauldron.completion.config.SamplingConfig;
 import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.config.TimeoutConfig;
 import systems.cauldron.completion.tokenizer.Gpt3Tokenizer;
 import systems.cauldron.completion.tokenizer.Tokenizer;
 import systems.cauldron.completion.utility.HttpUtility;
+import systems.cauldron.completion.utility.StreamWatchdog;
 
 import javax.json.Json;
 import javax.json.JsonArray;
@@ -14,11 +17,15 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 import javax.json.JsonValue;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 public class Ai21CompletionProvider extends CompletionProvider {
@@ -33,24 +40,33 @@ public class Ai21CompletionProvider extends CompletionProvider {
     private static final double TEMPERATURE_LIMIT = 5.0;
     private static final double TOP_P_LIMIT = 1.0;
 
-    private static final String COMPLETION_ENDPOINT_TEMPLATE = "https://api.ai21.com/studio/v1/%s/complete";
+    private static final URI DEFAULT_BASE_URI = URI.create("https://api.ai21.com");
+    private static final String COMPLETION_PATH_TEMPLATE = "/studio/v1/%s/complete";
 
     private final URI completionEndpoint;
     private final String apiToken;
     private final Tokenizer tokenizer;
 
     public Ai21CompletionProvider(String apiToken, Engine engine) {
+        this(apiToken, engine, DEFAULT_BASE_URI);
+    }
+
+    public Ai21CompletionProvider(String apiToken, Engine engine, URI baseUri) {
         String engineId = switch (engine) {
             case J1_LARGE -> "j1-large";
             case J1_JUMBO -> "j1-jumbo";
         };
-        this.completionEndpoint = URI.create(String.format(COMPLETION_ENDPOINT_TEMPLATE, engineId));
+        this.completionEndpoint = (baseUri != null ? baseUri : DEFAULT_BASE_URI).resolve(String.format(COMPLETION_PATH_TEMPLATE, engineId));
         this.apiToken = apiToken;
         this.tokenizer = Gpt3Tokenizer.getInstance(); // TODO: use the correct tokenizer/vocab for the AI21 model
     }
 
     @Override
-    public void complete(CompletionRequest request, SubmissionPublisher<String> completionTokenHandler) {
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                         CompletableFuture<Void> cancellation) {
+        if (completionTokenHandlers.isEmpty()) {
+            throw new IllegalArgumentException("at least one completion token handler is required");
+        }
         TerminationConfig terminationConfig = request.terminationConfig();
         if (terminationConfig.maxTokens() > MAX_TOKENS_LIMIT) {
             throw new IllegalArgumentException("maximum tokens requested cannot exceed " + MAX_TOKENS_LIMIT);
@@ -65,59 +81,93 @@ public class Ai21CompletionProvider extends CompletionProvider {
         if (samplingConfig.topP() > TOP_P_LIMIT) {
             throw new IllegalArgumentException("top-p cannot exceed " + TOP_P_LIMIT);
         }
+        TimeoutConfig timeoutConfig = request.timeoutConfig();
+        if (StreamWatchdog.isExpired(timeoutConfig)) {
+            callMeter.addExpiredCount(1);
+            TimeoutException exception = new TimeoutException("deadline expired before dispatch");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+            return;
+        }
         int promptTokenCount = getTokenCount(request.prompt());
-        JsonObject requestJson = buildRequest(request);
-        HttpRequest httpRequest = HttpUtility.buildRequest(requestJson, completionEndpoint, apiToken);
-        HttpUtility.buildClient()
-                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream())
-                .thenApply(response -> {
+        JsonObject requestJson = buildRequest(request, completionTokenHandlers.size());
+        HttpRequest httpRequest = HttpUtility.buildRequest(requestJson, completionEndpoint, apiToken, timeoutConfig);
+        StreamWatchdog watchdog = StreamWatchdog.start(timeoutConfig, () -> {
+            callMeter.addTimedOutCount(1);
+            TimeoutException exception = new TimeoutException("completion timed out");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+        });
+        cancellation.thenRun(() -> watchdog.cancel(() -> {
+            CancellationException exception = new CancellationException("completion cancelled");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+        }));
+        if (cancellation.isDone()) {
+            watchdog.stop();
+            return;
+        }
+        CompletableFuture<HttpResponse<InputStream>> exchange = HttpUtility.getClient()
+                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+        watchdog.watch(exchange);
+        exchange.thenApply(response -> {
                     int statusCode = response.statusCode();
                     if (statusCode != 200) {
                         throw new RuntimeException("unexpected status code: " + statusCode);
                     }
-                    meter.addRequestCount(1);
-                    meter.addSentTokenCount(promptTokenCount);
+                    callMeter.addRequestCount(1);
+                    callMeter.addSentTokenCount(promptTokenCount);
+                    watchdog.watch(response.body());
                     try (JsonReader reader = Json.createReader(response.body())) {
                         return reader.readObject();
                     }
                 })
                 .thenAccept(response -> {
+                    // claiming the watchdog keeps a check that fires after the response arrived from failing it
+                    if (!watchdog.expire()) {
+                        return;
+                    }
                     JsonArray completions = response.getJsonArray("completions");
-                    if (!completions.isEmpty()) {
-                        JsonObject completion = completions.getJsonObject(0);
-                        JsonObject data = completion.getJsonObject("data");
-                        JsonObject finishReason = completion.getJsonObject("finishReason");
-                        String reason = finishReason.getString("reason");
-                        String stopSequence;
-                        if ("stop".equals(reason)) {
-                            stopSequence = finishReason.getString("sequence");
-                        } else {
-                            stopSequence = null;
-                        }
-                        String text = data.getString("text");
-                        JsonArray tokenItems = data.getJsonArray("tokens");
-                        meter.addReceivedTokenCount(tokenItems.size());
-                        tokenItems.stream()
-                                .map(JsonValue::asJsonObject)
-                                .forEach(token -> {
-                                    if (stopSequence != null) {
-                                        JsonObject generatedToken = token.getJsonObject("generatedToken");
-                                        String tokenValue = generatedToken.getString("token");
-                                        if (stopSequence.equals(tokenValue)) {
-                                            return;
-                                        }
-                                    }
-                                    JsonObject textRange = token.getJsonObject("textRange");
-                                    int start = textRange.getInt("start");
-                                    int end = textRange.getInt("end");
-                                    completionTokenHandler.submit(text.substring(start, end));
-                                });
+                    int choiceCount = Math.min(completions.size(), completionTokenHandlers.size());
+                    for (int i = 0; i < choiceCount; i++) {
+                        submitCompletion(completions.getJsonObject(i), i, completionTokenHandlers.get(i), callMeter);
                     }
-                    completionTokenHandler.close();
+                    completionTokenHandlers.forEach(SubmissionPublisher::close);
                 })
                 .exceptionally(throwable -> {
-                    completionTokenHandler.closeExceptionally(throwable);
+                    if (HttpUtility.isTimeout(throwable) && watchdog.expire()) {
+                        callMeter.addTimedOutCount(1);
+                    }
+                    completionTokenHandlers.forEach(handler -> handler.closeExceptionally(throwable));
                     return null;
+                })
+                .whenComplete((result, throwable) -> watchdog.stop());
+    }
+
+    private static void submitCompletion(JsonObject completion, int index, SubmissionPublisher<String> completionTokenHandler, CompletionMeter callMeter) {
+        JsonObject data = completion.getJsonObject("data");
+        JsonObject finishReason = completion.getJsonObject("finishReason");
+        String reason = finishReason.getString("reason");
+        String stopSequence;
+        if ("stop".equals(reason)) {
+            stopSequence = finishReason.getString("sequence");
+        } else {
+            stopSequence = null;
+        }
+        String text = data.getString("text");
+        JsonArray tokenItems = data.getJsonArray("tokens");
+        callMeter.addReceivedTokenCount(index, tokenItems.size());
+        tokenItems.stream()
+                .map(JsonValue::asJsonObject)
+                .forEach(token -> {
+                    if (stopSequence != null) {
+                        JsonObject generatedToken = token.getJsonObject("generatedToken");
+                        String tokenValue = generatedToken.getString("token");
+                        if (stopSequence.equals(tokenValue)) {
+                            return;
+                        }
+                    }
+                    JsonObject textRange = token.getJsonObject("textRange");
+                    int start = textRange.getInt("start");
+                    int end = textRange.getInt("end");
+                    completionTokenHandler.submit(text.substring(start, end));
                 });
     }
 
@@ -126,7 +176,7 @@ public class Ai21CompletionProvider extends CompletionProvider {
         return tokens.size();
     }
 
-    private static JsonObject buildRequest(CompletionRequest request) {
+    private static JsonObject buildRequest(CompletionRequest request, int choiceCount) {
         JsonArrayBuilder jsonStopSequences = Json.createArrayBuilder();
         Stream.of(request.terminationConfig().stopSequences())
                 .forEach(jsonStopSequences::add);
@@ -134,7 +184,7 @@ public class Ai21CompletionProvider extends CompletionProvider {
                 .add("prompt", request.prompt())
                 .add("maxTokens", request.terminationConfig().maxTokens())
                 .add("stopSequences", jsonStopSequences)
-                .add("numResults", 1)
+                .add("numResults", choiceCount)
                 .add("topKReturn", 0)
                 .add("temperature", request.samplingConfig().temperature())
                 .add("topP", request.samplingConfig().topP())
@@ -0,0 +1,157 @@
+package systems.cauldron.completion.provider;
+
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.TimeoutConfig;
+import systems.cauldron.completion.tokenizer.Tokenizer;
+import systems.cauldron.completion.utility.HttpUtility;
+import systems.cauldron.completion.utility.StreamWatchdog;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.EOFException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+// the server-sent event stream shared by the OpenAI-compatible completion endpoints
+final class CompletionEventStream {
+
+    private final URI completionEndpoint;
+    private final String apiToken;
+    private final Tokenizer tokenizer;
+    private final BiFunction<CompletionRequest, Integer, JsonObject> requestBuilder;
+
+    CompletionEventStream(URI completionEndpoint, String apiToken, Tokenizer tokenizer, BiFunction<CompletionRequest, Integer, JsonObject> requestBuilder) {
+        this.completionEndpoint = completionEndpoint;
+        this.apiToken = apiToken;
+        this.tokenizer = tokenizer;
+        this.requestBuilder = requestBuilder;
+    }
+
+    void start(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+               CompletableFuture<Void> cancellation) {
+        stream(completionTokenHandlers, new StreamContinuation(request), callMeter, cancellation);
+    }
+
+    private void stream(List<SubmissionPublisher<String>> completionTokenHandlers, StreamContinuation continuation, CompletionMeter callMeter,
+                        CompletableFuture<Void> cancellation) {
+        CompletionRequest request = continuation.nextRequest();
+        TimeoutConfig timeoutConfig = request.timeoutConfig();
+        int promptTokenCount = getTokenCount(request.prompt());
+        JsonObject requestJson = requestBuilder.apply(request, completionTokenHandlers.size());
+        HttpRequest httpRequest = HttpUtility.buildRequest(requestJson, completionEndpoint, apiToken, timeoutConfig);
+        StreamWatchdog watchdog = StreamWatchdog.start(timeoutConfig, () -> {
+            callMeter.addTimedOutCount(1);
+            TimeoutException exception = new TimeoutException("completion timed out");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+        });
+        cancellation.thenRun(() -> watchdog.cancel(() -> {
+            CancellationException exception = new CancellationException("completion cancelled");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+        }));
+        if (cancellation.isDone()) {
+            watchdog.stop();
+            return;
+        }
+        CompletableFuture<HttpResponse<Stream<String>>> exchange = HttpUtility.getClient()
+                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofLines());
+        watchdog.watch(exchange);
+        AtomicBoolean streaming = new AtomicBoolean();
+        exchange.thenAccept(response -> {
+                    int statusCode = response.statusCode();
+                    if (statusCode != 200) {
+                        throw new RuntimeException("unexpected status code: " + statusCode);
+                    }
+                    streaming.set(true);
+                    callMeter.addRequestCount(1);
+                    callMeter.addSentTokenCount(promptTokenCount);
+                    AtomicBoolean done = new AtomicBoolean();
+                    try (Stream<String> lines = response.body()) {
+                        watchdog.watch(lines);
+                        lines.filter(line -> !line.isEmpty())
+                                .forEach(line -> {
+                                    watchdog.touch();
+                                    if (!done.get() && line.startsWith("data: ")) {
+                                        String dataValue = line.substring(6);
+                                        if ("[DONE]".equals(dataValue)) {
+                                            done.set(true);
+                                            // claiming the watchdog keeps a check that fires before the stream closes from failing a finished completion
+                                            if (watchdog.expire()) {
+                                                completionTokenHandlers.forEach(SubmissionPublisher::close);
+                                            }
+                                        } else {
+                                            JsonObject jsonResponse;
+                                            try (JsonReader reader = Json.createReader(new StringReader(dataValue))) {
+                                                jsonResponse = reader.readObject();
+                                            }
+                                            JsonArray choices = jsonResponse.getJsonArray("choices");
+                                            choices.stream()
+                                                    .map(JsonValue::asJsonObject)
+                                                    .forEach(choice -> {
+                                                        String completionText = choice.getString("text");
+                                                        if (!completionText.isEmpty()) {
+                                                            int index = choice.getInt("index", 0);
+                                                            if (index < 0 || index >= completionTokenHandlers.size()) {
+                                                                throw new RuntimeException("unexpected choice index: " + index);
+                                                            }
+                                                            int receivedTokenCount = getTokenCount(completionText);
+                                                            callMeter.addReceivedTokenCount(index, receivedTokenCount);
+                                                            continuation.record(completionText, receivedTokenCount);
+                                                            completionTokenHandlers.get(index).submit(completionText);
+                                                        }
+                                                    });
+                                        }
+                                    }
+                                });
+                    }
+                    if (!done.get()) {
+                        throw new UncheckedIOException(new EOFException("completion stream ended before completion"));
+                    }
+                })
+                .exceptionally(throwable -> {
+                    if (HttpUtility.isTimeout(throwable)) {
+                        if (watchdog.expire()) {
+                            callMeter.addTimedOutCount(1);
+                        }
+                    } else if (isResumable(throwable, streaming.get(), completionTokenHandlers.size(), timeoutConfig) && watchdog.expire()) {
+                        // a single-choice stream that broke mid-generation continues from the text already received
+                        watchdog.stop();
+                        if (continuation.isExhausted()) {
+                            completionTokenHandlers.forEach(SubmissionPublisher::close);
+                            return null;
+                        }
+                        if (continuation.tryResume()) {
+                            callMeter.addResumedCount(1);
+                            stream(completionTokenHandlers, continuation, callMeter, cancellation);
+                            return null;
+                        }
+                    }
+                    completionTokenHandlers.forEach(handler -> handler.closeExceptionally(throwable));
+                    return null;
+                })
+                .whenComplete((result, throwable) -> watchdog.stop());
+    }
+
+    private static boolean isResumable(Throwable throwable, boolean streaming, int choiceCount, TimeoutConfig timeoutConfig) {
+        return streaming && choiceCount == 1 && HttpUtility.isTransportFailure(throwable) && !StreamWatchdog.isExpired(timeoutConfig);
+    }
+
+    private int getTokenCount(String prompt) {
+        List<String> tokens = tokenizer.tokenize(prompt);
+        return tokens.size();
+    }
+}
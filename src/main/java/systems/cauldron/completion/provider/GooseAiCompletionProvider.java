@@ -1,25 +1,24 @@
 package systems.cauldron.completion.provider;
 
+import systems.cauldron.completion.CompletionMeter;
 import systems.cauldron.completion.CompletionProvider;
 import systems.cauldron.completion.config.CompletionRequest;
 import systems.cauldron.completion.config.SamplingConfig;
 import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.config.TimeoutConfig;
 import systems.cauldron.completion.tokenizer.Gpt3Tokenizer;
 import systems.cauldron.completion.tokenizer.Tokenizer;
-import systems.cauldron.completion.utility.HttpUtility;
+import systems.cauldron.completion.utility.StreamWatchdog;
 
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
-import javax.json.JsonReader;
-import java.io.StringReader;
 import java.net.URI;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 public class GooseAiCompletionProvider extends CompletionProvider {
@@ -42,13 +41,17 @@ public class GooseAiCompletionProvider extends CompletionProvider {
     private static final double TEMPERATURE_LIMIT = 5.0; //TODO: figure out actual temp limit for OpenAI
     private static final double TOP_P_LIMIT = 1.0;
 
-    private static final String COMPLETION_ENDPOINT_TEMPLATE = "https://api.goose.ai/v1/engines/%s/completions";
+    private static final URI DEFAULT_BASE_URI = URI.create("https://api.goose.ai");
+    private static final String COMPLETION_PATH_TEMPLATE = "/v1/engines/%s/completions";
 
-    private final URI completionEndpoint;
-    private final String apiToken;
     private final Tokenizer tokenizer;
+    private final CompletionEventStream eventStream;
 
     public GooseAiCompletionProvider(String apiToken, Engine engine) {
+        this(apiToken, engine, DEFAULT_BASE_URI);
+    }
+
+    public GooseAiCompletionProvider(String apiToken, Engine engine, URI baseUri) {
         String engineId = switch (engine) {
             case GPT_J_6B -> "gpt-j-6b";
             case GPT_NEO_20B -> "gpt-neo-20b";
@@ -61,17 +64,19 @@ public class GooseAiCompletionProvider extends CompletionProvider {
             case FAIRSEQ_1_3B -> "fairseq-1-3b";
             case FAIRSEQ_125M -> "fairseq-125m";
         };
-        this.completionEndpoint = URI.create(String.format(COMPLETION_ENDPOINT_TEMPLATE, engineId));
-        this.apiToken = apiToken;
+        URI completionEndpoint = (baseUri != null ? baseUri : DEFAULT_BASE_URI).resolve(String.format(COMPLETION_PATH_TEMPLATE, engineId));
         this.tokenizer = Gpt3Tokenizer.getInstance();
+        this.eventStream = new CompletionEventStream(completionEndpoint, apiToken, tokenizer, GooseAiCompletionProvider::buildRequest);
     }
 
     @Override
-    public void complete(CompletionRequest request, SubmissionPublisher<String> completionTokenHandler) {
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                         CompletableFuture<Void> cancellation) {
+        if (completionTokenHandlers.isEmpty()) {
+            throw new IllegalArgumentException("at least one completion token handler is required");
+        }
         TerminationConfig terminationConfig = request.terminationConfig();
-        int promptTokenCount = getTokenCount(request.prompt());
-        int requestMaxTokenCount = promptTokenCount + terminationConfig.maxTokens();
-        if (requestMaxTokenCount > MAX_TOKENS_LIMIT) {
+        if (tokenizer.exceedsTokenCount(request.prompt(), MAX_TOKENS_LIMIT - terminationConfig.maxTokens())) {
             throw new IllegalArgumentException("maximum tokens requested cannot exceed " + MAX_TOKENS_LIMIT);
         }
         if (terminationConfig.stopSequences().length > STOP_SEQUENCE_LIMIT) {
@@ -84,59 +89,22 @@ public class GooseAiCompletionProvider extends CompletionProvider {
         if (samplingConfig.topP() > TOP_P_LIMIT) {
             throw new IllegalArgumentException("top-p cannot exceed " + TOP_P_LIMIT);
         }
-        JsonObject requestJson = buildRequest(request);
-        HttpRequest httpRequest = HttpUtility.buildRequest(requestJson, completionEndpoint, apiToken);
-        HttpUtility.buildClient()
-                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofLines())
-                .thenAccept(response -> {
-                    int statusCode = response.statusCode();
-                    if (statusCode != 200) {
-                        throw new RuntimeException("unexpected status code: " + statusCode);
-                    }
-                    meter.addRequestCount(1);
-                    meter.addSentTokenCount(promptTokenCount);
-                    response.body()
-                            .filter(line -> !line.isEmpty())
-                            .forEach(line -> {
-                                if (line.startsWith("data: ")) {
-                                    String dataValue = line.substring(6);
-                                    if ("[DONE]".equals(dataValue)) {
-                                        completionTokenHandler.close();
-                                    } else {
-                                        JsonObject jsonResponse;
-                                        try (JsonReader reader = Json.createReader(new StringReader(dataValue))) {
-                                            jsonResponse = reader.readObject();
-                                        }
-                                        JsonArray choices = jsonResponse.getJsonArray("choices");
-                                        if (!choices.isEmpty()) {
-                                            JsonObject choice = choices.getJsonObject(0);
-                                            String completionText = choice.getString("text");
-                                            if (!completionText.isEmpty()) {
-                                                int receivedTokenCount = getTokenCount(completionText);
-                                                meter.addReceivedTokenCount(receivedTokenCount);
-                                                completionTokenHandler.submit(completionText);
-                                            }
-                                        }
-                                    }
-                                }
-                            });
-                })
-                .exceptionally(throwable -> {
-                    completionTokenHandler.closeExceptionally(throwable);
-                    return null;
-                });
-    }
-
-    private int getTokenCount(String prompt) {
-        List<String> tokens = tokenizer.tokenize(prompt);
-        return tokens.size();
+        TimeoutConfig timeoutConfig = request.timeoutConfig();
+        if (StreamWatchdog.isExpired(timeoutConfig)) {
+            callMeter.addExpiredCount(1);
+            TimeoutException exception = new TimeoutException("deadline expired before dispatch");
+            completionTokenHandlers.forEach(handler -> handler.closeExceptionally(exception));
+            return;
+        }
+        eventStream.start(request, completionTokenHandlers, callMeter, cancellation);
     }
 
-    private static JsonObject buildRequest(CompletionRequest request) {
+    private static JsonObject buildRequest(CompletionRequest request, int choiceCount) {
         JsonObjectBuilder objectBuilder = Json.createObjectBuilder()
                 .add("stream", true)
                 .add("prompt", request.prompt())
-                .add("max_tokens", request.terminationConfig().maxTokens());
+                .add("max_tokens", request.terminationConfig().maxTokens())
+                .add("n", choiceCount);
         if (request.terminationConfig().stopSequences().length != 0) {
             JsonArrayBuilder jsonStopSequences = Json.createArrayBuilder();
             Stream.of(request.terminationConfig().stopSequences())
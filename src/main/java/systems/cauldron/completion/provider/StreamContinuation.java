@@ -0,0 +1,48 @@
+package systems.cauldron.completion.provider;
+
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.TerminationConfig;
+
+final class StreamContinuation {
+
+    private static final int MAX_RESUME_COUNT = 3;
+
+    private final CompletionRequest request;
+    private final StringBuilder receivedText;
+    private int receivedTokenCount;
+    private int resumeCount;
+
+    StreamContinuation(CompletionRequest request) {
+        this.request = request;
+        this.receivedText = new StringBuilder();
+    }
+
+    synchronized void record(String text, int tokenCount) {
+        receivedText.append(text);
+        receivedTokenCount += tokenCount;
+    }
+
+    // the continuation asks only for the tokens not yet received, appending them to the text already streamed
+    synchronized CompletionRequest nextRequest() {
+        if (receivedText.isEmpty()) {
+            return request;
+        }
+        TerminationConfig terminationConfig = request.terminationConfig();
+        return new CompletionRequest(request.prompt() + receivedText,
+                new TerminationConfig(terminationConfig.maxTokens() - receivedTokenCount, terminationConfig.stopSequences()),
+                request.samplingConfig(),
+                request.timeoutConfig());
+    }
+
+    synchronized boolean isExhausted() {
+        return receivedTokenCount >= request.terminationConfig().maxTokens();
+    }
+
+    synchronized boolean tryResume() {
+        if (resumeCount >= MAX_RESUME_COUNT) {
+            return false;
+        }
+        resumeCount++;
+        return true;
+    }
+}
@@ -0,0 +1,278 @@
+package systems.cauldron.completion.tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class DocumentChunker implements Iterator<String>, AutoCloseable {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_SEGMENT_LENGTH = 4096;
+
+    private final Tokenizer tokenizer;
+    private final Reader reader;
+    private final int tokenBudget;
+    private final int overlapTokenCount;
+    private final char[] readBuffer;
+    private final StringBuilder text;
+    private final Deque<Segment> carry;
+    private final List<Segment> chunk;
+    private int readPosition;
+    private int readLimit;
+    private int whitespaceStart;
+    private int chunkTokenCount;
+    private int overlapSegmentCount;
+    private boolean endOfInput;
+    private boolean cutPending;
+    private String next;
+
+    public DocumentChunker(Tokenizer tokenizer, InputStream inputStream, int tokenBudget, int overlapTokenCount) {
+        this(tokenizer, new InputStreamReader(inputStream, StandardCharsets.UTF_8), tokenBudget, overlapTokenCount);
+    }
+
+    public DocumentChunker(Tokenizer tokenizer, Reader reader, int tokenBudget, int overlapTokenCount) {
+        if (tokenBudget < 1) {
+            throw new IllegalArgumentException("token budget must be at least 1");
+        }
+        if (overlapTokenCount < 0 || overlapTokenCount >= tokenBudget) {
+            throw new IllegalArgumentException("overlap token count must be between 0 and the token budget");
+        }
+        this.tokenizer = tokenizer;
+        this.reader = reader;
+        this.tokenBudget = tokenBudget;
+        this.overlapTokenCount = overlapTokenCount;
+        this.readBuffer = new char[READ_BUFFER_SIZE];
+        this.text = new StringBuilder();
+        this.carry = new ArrayDeque<>();
+        this.chunk = new ArrayList<>();
+        this.whitespaceStart = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = computeNext();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String computeNext() throws IOException {
+        while (true) {
+            Segment segment = carry.isEmpty() ? readSegment() : carry.poll();
+            if (segment == null) {
+                return chunk.size() > overlapSegmentCount ? emit(chunk.size()) : null;
+            }
+            if (chunkTokenCount + segment.tokenCount() <= tokenBudget) {
+                chunk.add(segment);
+                chunkTokenCount += segment.tokenCount();
+                continue;
+            }
+            carry.addFirst(segment);
+            if (chunk.size() == overlapSegmentCount) {
+                // the overlap alone leaves no room for the next segment, so it is dropped
+                chunk.clear();
+                chunkTokenCount = 0;
+                overlapSegmentCount = 0;
+                continue;
+            }
+            return emit(preferredCut());
+        }
+    }
+
+    // prefer ending a chunk at a paragraph break, as long as the chunk stays at least half full
+    private int preferredCut() {
+        int tokenCount = 0;
+        int cut = chunk.size();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i > overlapSegmentCount && chunk.get(i).startsParagraph() && tokenCount * 2 >= tokenBudget) {
+                cut = i;
+            }
+            tokenCount += chunk.get(i).tokenCount();
+        }
+        return cut;
+    }
+
+    private String emit(int cut) {
+        String chunkText = join(cut);
+        // segments cut inside a pre-token may tokenize differently once joined, so a chunk holding any of them
+        // is measured as a whole and shortened until it fits
+        while (cut > overlapSegmentCount + 1 && hasForcedSegment(cut) && tokenizer.exceedsTokenCount(chunkText, tokenBudget)) {
+            cut--;
+            chunkText = join(cut);
+        }
+        for (int i = chunk.size() - 1; i >= cut; i--) {
+            carry.addFirst(chunk.get(i));
+        }
+        int overlapStart = cut;
+        int overlapTokens = 0;
+        while (overlapStart > 1 && overlapTokens + chunk.get(overlapStart - 1).tokenCount() <= overlapTokenCount) {
+            overlapStart--;
+            overlapTokens += chunk.get(overlapStart).tokenCount();
+        }
+        List<Segment> overlap = new ArrayList<>(chunk.subList(overlapStart, cut));
+        chunk.clear();
+        chunk.addAll(overlap);
+        chunkTokenCount = overlapTokens;
+        overlapSegmentCount = overlap.size();
+        return chunkText;
+    }
+
+    private String join(int cut) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cut; i++) {
+            sb.append(chunk.get(i).text());
+        }
+        return sb.toString();
+    }
+
+    private boolean hasForcedSegment(int cut) {
+        for (int i = 0; i < cut; i++) {
+            if (chunk.get(i).forced()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // segments are cut where non-whitespace meets whitespace, which is always a pre-token boundary,
+    // so the token counts of the segments sum to the token count of the chunk without tokenizing it again;
+    // only a run too long to hold is cut elsewhere, and the segments on both sides of that cut are marked as forced,
+    // as are the pieces of a segment split on token boundaries
+    private Segment readSegment() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (text.isEmpty()) {
+                    return null;
+                }
+                String remaining = text.toString();
+                text.setLength(0);
+                whitespaceStart = -1;
+                return nextSegment(remaining, false);
+            }
+            char ch = (char) c;
+            if (Character.isWhitespace(ch)) {
+                if (whitespaceStart < 0 && !text.isEmpty() && !Character.isWhitespace(text.charAt(text.length() - 1))) {
+                    whitespaceStart = text.length();
+                }
+            } else if (whitespaceStart >= 0) {
+                int boundary = whitespaceStart;
+                whitespaceStart = -1;
+                if (isSentenceEnd(boundary) || isParagraphBreak(boundary) || boundary >= MAX_SEGMENT_LENGTH) {
+                    String segmentText = text.substring(0, boundary);
+                    text.delete(0, boundary);
+                    text.append(ch);
+                    return nextSegment(segmentText, false);
+                }
+            }
+            text.append(ch);
+            if (text.length() >= MAX_SEGMENT_LENGTH * 2 && whitespaceStart < 0) {
+                int length = text.length();
+                if (Character.isHighSurrogate(text.charAt(length - 1))) {
+                    length--;
+                }
+                String segmentText = text.substring(0, length);
+                text.delete(0, length);
+                return nextSegment(segmentText, true);
+            }
+        }
+    }
+
+    private Segment nextSegment(String segmentText, boolean endsInsidePreToken) {
+        boolean forced = cutPending || endsInsidePreToken;
+        cutPending = endsInsidePreToken;
+        return tokenize(segmentText, forced);
+    }
+
+    private Segment tokenize(String segmentText, boolean forced) {
+        List<String> tokens = tokenizer.tokenize(segmentText);
+        boolean startsParagraph = isParagraphBreak(segmentText);
+        if (tokens.size() <= tokenBudget) {
+            return new Segment(segmentText, tokens.size(), startsParagraph, forced);
+        }
+        // a segment too large for any chunk is split on token boundaries
+        Segment first = null;
+        for (int start = 0; start < tokens.size(); start += tokenBudget) {
+            List<String> pieceTokens = tokens.subList(start, Math.min(start + tokenBudget, tokens.size()));
+            Segment piece = new Segment(String.join("", pieceTokens), pieceTokens.size(), start == 0 && startsParagraph, true);
+            if (first == null) {
+                first = piece;
+            } else {
+                carry.addLast(piece);
+            }
+        }
+        return first;
+    }
+
+    private boolean isSentenceEnd(int boundary) {
+        int i = boundary - 1;
+        while (i > 0 && "\"')]”’".indexOf(text.charAt(i)) >= 0) {
+            i--;
+        }
+        return ".!?".indexOf(text.charAt(i)) >= 0;
+    }
+
+    private boolean isParagraphBreak(int boundary) {
+        return isParagraphBreak(text.subSequence(boundary, text.length()));
+    }
+
+    private static boolean isParagraphBreak(CharSequence sequence) {
+        int newlineCount = 0;
+        for (int i = 0; i < sequence.length() && Character.isWhitespace(sequence.charAt(i)); i++) {
+            if (sequence.charAt(i) == '\n' && ++newlineCount == 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int read() throws IOException {
+        if (endOfInput) {
+            return -1;
+        }
+        if (readPosition == readLimit) {
+            readLimit = reader.read(readBuffer);
+            readPosition = 0;
+            if (readLimit <= 0) {
+                endOfInput = true;
+                readLimit = 0;
+                return -1;
+            }
+        }
+        return readBuffer[readPosition++];
+    }
+
+    private record Segment(String text, int tokenCount, boolean startsParagraph, boolean forced) {
+    }
+}
@@ -3,21 +3,31 @@ package systems.cauldron.completion.tokenizer;
 import systems.cauldron.completion.tokenizer.bpe.Gpt3BpeReader;
 import systems.cauldron.completion.tokenizer.bpe.SymbolPair;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Gpt3Tokenizer implements Tokenizer {
 
+    private static final double ESTIMATED_CHARACTERS_PER_TOKEN = 4.0;
+    private static final int HIT_SAMPLE_MASK = 0xF;
+
     private static final Pattern GPT3_PRETOKEN_PATTERN = Pattern.compile("'s|'t|'re|'ve|'m|'ll|'d| ?\\p{L}+| ?\\p{N}+| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+", Pattern.UNICODE_CHARACTER_CLASS);
 
     private final Gpt3BpeReader pairLookup;
-    private final Map<String, List<String>> tokenCache;
+    private final Map<String, CacheEntry> tokenCache;
 
     private static volatile Gpt3Tokenizer INSTANCE = new Gpt3Tokenizer();
 
@@ -38,17 +48,111 @@ public class Gpt3Tokenizer implements Tokenizer {
         return instance;
     }
 
+    @Override
     public List<String> tokenize(String text) {
         List<String> textTokens = new ArrayList<>();
+        // counting the hits of one call in sixteen keeps hot entries from contending on their counters while still ranking them
+        boolean sampled = (ThreadLocalRandom.current().nextInt() & HIT_SAMPLE_MASK) == 0;
         Matcher preTokens = GPT3_PRETOKEN_PATTERN.matcher(text);
         while (preTokens.find()) {
             String preToken = preTokens.group();
-            List<String> tokens = tokenCache.computeIfAbsent(preToken, this::computeTokens);
-            textTokens.addAll(tokens);
+            CacheEntry entry = tokenCache.computeIfAbsent(preToken, key -> new CacheEntry(computeTokens(key)));
+            if (sampled) {
+                CacheEntry.HIT_COUNT.incrementAndGet(entry);
+            }
+            textTokens.addAll(entry.tokens);
         }
         return textTokens;
     }
 
+    // every pre-token yields at least one token, no more tokens than it has characters,
+    // and no fewer than its length divided by the longest token in the merge table
+    @Override
+    public TokenCountEstimate estimateTokenCount(String text) {
+        return estimateTokenCount(text, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean exceedsTokenCount(String text, int limit) {
+        if (text.length() <= limit) {
+            return false;
+        }
+        TokenCountEstimate estimate = estimateTokenCount(text, limit);
+        if (estimate.lowerBound() > limit) {
+            return true;
+        }
+        if (estimate.upperBound() <= limit) {
+            return false;
+        }
+        return tokenize(text).size() > limit;
+    }
+
+    private TokenCountEstimate estimateTokenCount(String text, int lowerBoundLimit) {
+        int maxTokenLength = pairLookup.getMaxTokenLength();
+        long lowerBound = 0L;
+        long upperBound = 0L;
+        long estimate = 0L;
+        Matcher preTokens = GPT3_PRETOKEN_PATTERN.matcher(text);
+        while (preTokens.find()) {
+            CacheEntry entry = tokenCache.get(preTokens.group());
+            if (entry != null) {
+                lowerBound += entry.tokens.size();
+                upperBound += entry.tokens.size();
+                estimate += entry.tokens.size();
+            } else {
+                int length = preTokens.end() - preTokens.start();
+                int preTokenLowerBound = (length + maxTokenLength - 1) / maxTokenLength;
+                lowerBound += preTokenLowerBound;
+                upperBound += length;
+                estimate += Math.max(preTokenLowerBound, Math.round(length / ESTIMATED_CHARACTERS_PER_TOKEN));
+            }
+            if (lowerBound > lowerBoundLimit) {
+                int remainingLength = text.length() - preTokens.end();
+                upperBound += remainingLength;
+                estimate += Math.round(remainingLength / ESTIMATED_CHARACTERS_PER_TOKEN);
+                break;
+            }
+        }
+        return new TokenCountEstimate(saturate(lowerBound), saturate(upperBound), saturate(estimate));
+    }
+
+    public void saveCacheSnapshot(Path path, int maxEntryCount) {
+        // hit counts keep changing while the cache is in use, so rank a stable copy of them,
+        // holding only the hottest entries in a min-heap rather than sorting the whole cache
+        PriorityQueue<RankedEntry> hottest = new PriorityQueue<>(Comparator.comparingInt(RankedEntry::hitCount));
+        for (Map.Entry<String, CacheEntry> entry : tokenCache.entrySet()) {
+            int hitCount = entry.getValue().hitCount;
+            if (hottest.size() < maxEntryCount) {
+                hottest.add(new RankedEntry(entry.getKey(), entry.getValue().tokens, hitCount));
+            } else if (!hottest.isEmpty() && hitCount > hottest.peek().hitCount()) {
+                hottest.poll();
+                hottest.add(new RankedEntry(entry.getKey(), entry.getValue().tokens, hitCount));
+            }
+        }
+        Map<String, List<String>> hottestEntries = new HashMap<>();
+        hottest.forEach(entry -> hottestEntries.put(entry.preToken(), entry.tokens()));
+        try {
+            TokenCacheSnapshot.write(path, pairLookup.getMergeTableHash(), hottestEntries);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int loadCacheSnapshot(Path path) {
+        Map<String, List<String>> entries;
+        try {
+            entries = TokenCacheSnapshot.read(path, pairLookup.getMergeTableHash());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        entries.forEach((preToken, tokens) -> tokenCache.putIfAbsent(preToken, new CacheEntry(tokens)));
+        return entries.size();
+    }
+
+    private static int saturate(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
     private List<String> computeTokens(String preToken) {
         List<String> tokens = initializeTokens(preToken);
         while (true) {
@@ -98,4 +202,19 @@ public class Gpt3Tokenizer implements Tokenizer {
         }
         return newTokens;
     }
+
+    private record RankedEntry(String preToken, List<String> tokens, int hitCount) {
+    }
+
+    private static class CacheEntry {
+
+        private static final AtomicIntegerFieldUpdater<CacheEntry> HIT_COUNT = AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "hitCount");
+
+        private final List<String> tokens;
+        private volatile int hitCount;
+
+        private CacheEntry(List<String> tokens) {
+            this.tokens = tokens;
+        }
+    }
 }
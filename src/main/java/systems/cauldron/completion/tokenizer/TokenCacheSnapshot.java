@@ -0,0 +1,103 @@
+package systems.cauldron.completion.tokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class TokenCacheSnapshot {
+
+    private static final int MAGIC = 0x47544353;
+    private static final int VERSION = 1;
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    private TokenCacheSnapshot() {
+    }
+
+    // layout: magic, version, merge table hash, entry count, then per entry the UTF-8 pre-token
+    // followed by the character length of each of its tokens, since tokens always concatenate to the pre-token
+    static void write(Path path, byte[] mergeTableHash, Map<String, List<String>> entries) throws IOException {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        List<Map.Entry<String, List<String>>> writableEntries = entries.entrySet().stream()
+                .filter(entry -> entry.getKey().length() * 3 <= MAX_FIELD_LENGTH)
+                .toList();
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeShort(mergeTableHash.length);
+            os.write(mergeTableHash);
+            os.writeInt(writableEntries.size());
+            for (Map.Entry<String, List<String>> entry : writableEntries) {
+                byte[] preToken = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                os.writeShort(preToken.length);
+                os.write(preToken);
+                List<String> tokens = entry.getValue();
+                os.writeShort(tokens.size());
+                for (String token : tokens) {
+                    os.writeShort(token.length());
+                }
+            }
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Map<String, List<String>> read(Path path, byte[] mergeTableHash) throws IOException {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Map.of();
+            }
+            byte[] snapshotHash = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(snapshotHash);
+            if (!Arrays.equals(snapshotHash, mergeTableHash)) {
+                return Map.of();
+            }
+            int entryCount = buffer.getInt();
+            Map<String, List<String>> entries = new HashMap<>(entryCount * 4 / 3 + 1);
+            for (int i = 0; i < entryCount; i++) {
+                String preToken = readString(buffer);
+                int tokenCount = Short.toUnsignedInt(buffer.getShort());
+                List<String> tokens = new ArrayList<>(tokenCount);
+                int start = 0;
+                for (int j = 0; j < tokenCount; j++) {
+                    int end = start + Short.toUnsignedInt(buffer.getShort());
+                    tokens.add(preToken.substring(start, end));
+                    start = end;
+                }
+                if (start != preToken.length()) {
+                    return Map.of();
+                }
+                entries.put(preToken, List.copyOf(tokens));
+            }
+            return entries;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // a truncated or corrupt snapshot is treated the same as a stale one
+            return Map.of();
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,52 @@
+package systems.cauldron.completion.tokenizer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TokenCacheSnapshotter implements AutoCloseable {
+
+    private final Gpt3Tokenizer tokenizer;
+    private final Path path;
+    private final int maxEntryCount;
+    private final ScheduledExecutorService scheduler;
+    private final Thread shutdownHook;
+
+    public TokenCacheSnapshotter(Gpt3Tokenizer tokenizer, Path path, Duration interval, int maxEntryCount) {
+        this.tokenizer = tokenizer;
+        this.path = path;
+        this.maxEntryCount = maxEntryCount;
+        tokenizer.loadCacheSnapshot(path);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-cache-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shutdownHook = new Thread(this::saveQuietly, "token-cache-snapshotter-shutdown");
+        long intervalNanos = interval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook takes the final snapshot
+            return;
+        }
+        tokenizer.saveCacheSnapshot(path, maxEntryCount);
+    }
+
+    private void saveQuietly() {
+        try {
+            tokenizer.saveCacheSnapshot(path, maxEntryCount);
+        } catch (RuntimeException e) {
+            // a failed snapshot only costs warm-up time after the next restart, so retry on the next run
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package systems.cauldron.completion.tokenizer;
+
+public record TokenCountEstimate(int lowerBound, int upperBound, int estimate) {
+
+    public boolean isExact() {
+        return lowerBound == upperBound;
+    }
+}
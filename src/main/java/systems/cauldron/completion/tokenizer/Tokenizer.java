@@ -4,4 +4,13 @@ import java.util.List;
 
 public interface Tokenizer {
     List<String> tokenize(String text);
+
+    default TokenCountEstimate estimateTokenCount(String text) {
+        int tokenCount = tokenize(text).size();
+        return new TokenCountEstimate(tokenCount, tokenCount, tokenCount);
+    }
+
+    default boolean exceedsTokenCount(String text, int limit) {
+        return tokenize(text).size() > limit;
+    }
 }
@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,11 +18,26 @@ import java.util.stream.IntStream;
 public class Gpt3BpeReader {
 
     private final Map<SymbolPair, Integer> pairLookup;
+    private final int maxTokenLength;
+    private final byte[] mergeTableHash;
 
     public Gpt3BpeReader() {
         List<SymbolPair> allPairs = loadAllPairs();
+        this.mergeTableHash = computeMergeTableHash(allPairs);
         this.pairLookup = IntStream.range(0, allPairs.size()).boxed()
                 .collect(Collectors.toUnmodifiableMap(allPairs::get, Function.identity()));
+        this.maxTokenLength = allPairs.stream()
+                .mapToInt(pair -> pair.merged().length())
+                .max()
+                .orElse(1);
+    }
+
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    public byte[] getMergeTableHash() {
+        return mergeTableHash.clone();
     }
 
     public SymbolPair selectMinRankPair(Set<SymbolPair> pairs) {
@@ -65,6 +82,22 @@ public class Gpt3BpeReader {
         return allPairs;
     }
 
+    private static byte[] computeMergeTableHash(List<SymbolPair> allPairs) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (SymbolPair pair : allPairs) {
+            digest.update(pair.first().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            digest.update(pair.second().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return digest.digest();
+    }
+
     private static Map<Integer, Integer> computeCodepointMap() {
         HashMap<Integer, Integer> codepointMapping = new HashMap<>();
         int extraOffset = 256;
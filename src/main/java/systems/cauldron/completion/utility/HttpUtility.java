@@ -1,31 +1,75 @@
 package systems.cauldron.completion.utility;
 
+import systems.cauldron.completion.config.TimeoutConfig;
+
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 
 public class HttpUtility {
 
-    public static HttpClient buildClient() {
-        return HttpClient.newBuilder()
-                .connectTimeout(Duration.of(10L, ChronoUnit.SECONDS))
-                .build();
+    // one client for every completion, so connections are pooled and a single selector thread serves all exchanges;
+    // providers read response bodies with blocking calls on the client's executor, so each live stream holds a virtual thread
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.of(10L, ChronoUnit.SECONDS))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    public static HttpClient getClient() {
+        return CLIENT;
     }
 
     public static HttpRequest buildRequest(JsonObject jsonObject, URI uri, String token) {
+        return buildRequest(jsonObject, uri, token, new TimeoutConfig(null, null));
+    }
+
+    public static HttpRequest buildRequest(JsonObject jsonObject, URI uri, String token, TimeoutConfig timeoutConfig) {
         byte[] payload = serializeJson(jsonObject);
-        return HttpRequest.newBuilder()
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(uri)
                 .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
                 .setHeader("Content-Type", "application/json")
-                .setHeader("Authorization", String.format("Bearer %s", token))
-                .build();
+                .setHeader("Authorization", String.format("Bearer %s", token));
+        Duration remaining = StreamWatchdog.remaining(timeoutConfig);
+        if (remaining != null) {
+            builder.timeout(remaining.isNegative() || remaining.isZero() ? Duration.ofNanos(1L) : remaining);
+        }
+        return builder.build();
+    }
+
+    public static boolean isTimeout(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    public static boolean isTransportFailure(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof HttpTimeoutException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
     }
 
     private static byte[] serializeJson(JsonObject jsonObject) {
@@ -0,0 +1,148 @@
+package systems.cauldron.completion.utility;
+
+import systems.cauldron.completion.config.TimeoutConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StreamWatchdog {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "completion-stream-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long deadlineNanos;
+    private final long idleTimeoutNanos;
+    private final Runnable onTimeout;
+    private final AtomicBoolean expired;
+    private volatile long lastActivityNanos;
+    private volatile boolean stopped;
+    private volatile ScheduledFuture<?> check;
+    private volatile Future<?> exchange;
+    private volatile AutoCloseable body;
+
+    private StreamWatchdog(long deadlineNanos, long idleTimeoutNanos, Runnable onTimeout) {
+        this.deadlineNanos = deadlineNanos;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.onTimeout = onTimeout;
+        this.expired = new AtomicBoolean();
+        this.lastActivityNanos = System.nanoTime();
+    }
+
+    public static boolean isExpired(TimeoutConfig timeoutConfig) {
+        Instant deadline = timeoutConfig.deadline();
+        return deadline != null && !Instant.now().isBefore(deadline);
+    }
+
+    public static Duration remaining(TimeoutConfig timeoutConfig) {
+        Instant deadline = timeoutConfig.deadline();
+        return deadline == null ? null : Duration.between(Instant.now(), deadline);
+    }
+
+    public static StreamWatchdog start(TimeoutConfig timeoutConfig, Runnable onTimeout) {
+        Duration remaining = remaining(timeoutConfig);
+        long nowNanos = System.nanoTime();
+        long deadlineNanos = remaining == null ? Long.MAX_VALUE : nowNanos + remaining.toNanos();
+        long idleTimeoutNanos = timeoutConfig.idleTimeout() == null ? Long.MAX_VALUE : timeoutConfig.idleTimeout().toNanos();
+        StreamWatchdog watchdog = new StreamWatchdog(deadlineNanos, idleTimeoutNanos, onTimeout);
+        watchdog.schedule(nowNanos);
+        return watchdog;
+    }
+
+    public void watch(Future<?> exchange) {
+        this.exchange = exchange;
+        if (expired.get()) {
+            exchange.cancel(true);
+        }
+    }
+
+    public void watch(AutoCloseable body) {
+        this.body = body;
+        if (expired.get()) {
+            closeQuietly(body);
+        }
+    }
+
+    public void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public boolean expire() {
+        return expired.compareAndSet(false, true);
+    }
+
+    // aborts the exchange for a caller that gave up on it, unless the stream already ended or timed out
+    public boolean cancel(Runnable onCancel) {
+        if (!expire()) {
+            return false;
+        }
+        onCancel.run();
+        abort();
+        return true;
+    }
+
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> check = this.check;
+        if (check != null) {
+            check.cancel(false);
+        }
+    }
+
+    private void schedule(long nowNanos) {
+        if (stopped) {
+            return;
+        }
+        long idleExpiryNanos = idleTimeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : lastActivityNanos + idleTimeoutNanos;
+        long nextCheckNanos = Math.min(deadlineNanos, idleExpiryNanos);
+        if (nextCheckNanos == Long.MAX_VALUE) {
+            return;
+        }
+        check = SCHEDULER.schedule(this::check, Math.max(nextCheckNanos - nowNanos, 0L), TimeUnit.NANOSECONDS);
+    }
+
+    private void check() {
+        if (stopped) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        boolean pastDeadline = nowNanos - deadlineNanos >= 0 && deadlineNanos != Long.MAX_VALUE;
+        boolean idle = idleTimeoutNanos != Long.MAX_VALUE && nowNanos - lastActivityNanos >= idleTimeoutNanos;
+        if (!pastDeadline && !idle) {
+            schedule(nowNanos);
+            return;
+        }
+        if (expire()) {
+            // notify first so the caller sees the timeout rather than the failure caused by aborting the stream
+            onTimeout.run();
+            abort();
+        }
+    }
+
+    private void abort() {
+        Future<?> exchange = this.exchange;
+        if (exchange != null) {
+            exchange.cancel(true);
+        }
+        AutoCloseable body = this.body;
+        if (body != null) {
+            closeQuietly(body);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // the stream is being abandoned, a failure to close it changes nothing for the caller
+        }
+    }
+}
@@ -8,10 +8,13 @@ import systems.cauldron.completion.config.CompletionRequest;
 import systems.cauldron.completion.config.SamplingConfig;
 import systems.cauldron.completion.config.TerminationConfig;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -45,6 +48,34 @@ public class CompletionTest {
         executeHelloWorldTest(provider);
     }
 
+    @Test
+    public void multipleChoiceOpenAiTest() {
+        String apiToken = Optional.ofNullable(System.getenv("OPENAI_API_TOKEN"))
+                .orElseThrow(() -> new AssertionError("missing required environment variable"));
+        CompletionProvider provider = CompletionProvider.create(apiToken, CompletionProvider.Type.OPENAI_DAVINCI);
+        String prompt = "His first program simply printed 'Hello";
+        TerminationConfig terminationConfig = new TerminationConfig(3, new String[]{"\n"});
+        SamplingConfig samplingConfig = new SamplingConfig(1.0, 1.0);
+        CompletionRequest request = new CompletionRequest(prompt, terminationConfig, samplingConfig);
+        List<SubmissionPublisher<String>> publishers = IntStream.range(0, 3)
+                .mapToObj(i -> new SubmissionPublisher<String>())
+                .toList();
+        List<CopyOnWriteArrayList<String>> results = publishers.stream()
+                .map(publisher -> new CopyOnWriteArrayList<String>())
+                .toList();
+        provider.complete(request, publishers);
+        CompletableFuture.allOf(IntStream.range(0, publishers.size())
+                        .mapToObj(i -> publishers.get(i).consume(results.get(i)::add))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+        results.forEach(result -> LOG.info("choice completion: \"{}\"", String.join("", result)));
+        assertTrue(results.stream().allMatch(result -> !result.isEmpty()));
+        CompletionMeter meter = provider.getMeter();
+        assertTrue(meter.getReceivedTokenCount() >= results.size());
+        assertTrue(meter.getSentTokenCount() > 0);
+        assertEquals(1, meter.getRequestCount());
+    }
+
     private void executeHelloWorldTest(CompletionProvider provider) {
         String prompt = "His first program simply printed 'Hello";
         TerminationConfig terminationConfig = new TerminationConfig(3, new String[]{"\n"});
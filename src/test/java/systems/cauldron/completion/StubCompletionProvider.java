@@ -0,0 +1,66 @@
+package systems.cauldron.completion;
+
+import systems.cauldron.completion.config.CompletionRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class StubCompletionProvider extends CompletionProvider {
+
+    public static final String FAILURE_PROMPT_PREFIX = "fail";
+
+    private final Function<CompletionRequest, Duration> delay;
+    private final List<String> prompts;
+    private final AtomicInteger abandonedCount;
+
+    public StubCompletionProvider() {
+        this(request -> Duration.ZERO);
+    }
+
+    public StubCompletionProvider(Function<CompletionRequest, Duration> delay) {
+        this.delay = delay;
+        this.prompts = new CopyOnWriteArrayList<>();
+        this.abandonedCount = new AtomicInteger();
+    }
+
+    public List<String> getPrompts() {
+        return prompts;
+    }
+
+    public int getAbandonedCount() {
+        return abandonedCount.get();
+    }
+
+    @Override
+    public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                         CompletableFuture<Void> cancellation) {
+        prompts.add(request.prompt());
+        long delayNanos = delay.apply(request).toNanos();
+        CompletableFuture.runAsync(() -> {
+            if (cancellation.isDone()) {
+                abandonedCount.incrementAndGet();
+                completionTokenHandlers.forEach(handler -> handler.closeExceptionally(new CancellationException("completion cancelled")));
+                return;
+            }
+            callMeter.addRequestCount(1);
+            callMeter.addSentTokenCount(1);
+            if (request.prompt().startsWith(FAILURE_PROMPT_PREFIX)) {
+                completionTokenHandlers.forEach(handler -> handler.closeExceptionally(new RuntimeException("stub failure")));
+                return;
+            }
+            for (String token : request.prompt().toUpperCase(Locale.ROOT).split("(?= )")) {
+                callMeter.addReceivedTokenCount(completionTokenHandlers.size());
+                completionTokenHandlers.forEach(handler -> handler.submit(token));
+            }
+            completionTokenHandlers.forEach(SubmissionPublisher::close);
+        }, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS));
+    }
+}
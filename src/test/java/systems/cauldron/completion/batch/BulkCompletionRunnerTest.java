@@ -0,0 +1,113 @@
+package systems.cauldron.completion.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkCompletionRunnerTest {
+
+    private static final int REQUEST_COUNT = 50;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void orderedOutputTest() throws IOException {
+        Path input = writeInput();
+        Path output = directory.resolve("output.jsonl");
+        Path checkpoint = directory.resolve("checkpoint");
+        UppercaseCompletionProvider provider = new UppercaseCompletionProvider();
+        List<BulkCompletionProgress> progress = new CopyOnWriteArrayList<>();
+        BulkCompletionRunner runner = new BulkCompletionRunner(provider, 8, Duration.ZERO, progress::add);
+        runner.run(input, output, checkpoint);
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(expectedOutput(0, REQUEST_COUNT), lines);
+        assertEquals(REQUEST_COUNT, provider.getMeter().getRequestCount());
+        assertEquals(REQUEST_COUNT, runner.getMeter().getRequestCount());
+        assertEquals(REQUEST_COUNT * 2, runner.getMeter().getReceivedTokenCount());
+        assertFalse(progress.isEmpty());
+        BulkCompletionProgress finalProgress = progress.get(progress.size() - 1);
+        assertEquals(REQUEST_COUNT + 1, finalProgress.completedCount());
+        assertEquals(Files.size(input), finalProgress.inputByteCount());
+        assertEquals(Files.size(input), finalProgress.processedByteCount());
+        assertEquals(Duration.ZERO, finalProgress.estimatedRemaining());
+        assertTrue(finalProgress.receivedTokensPerSecond() > 0.0);
+    }
+
+    @Test
+    public void resumeFromCheckpointTest() throws IOException {
+        Path input = writeInput();
+        Path output = directory.resolve("output.jsonl");
+        Path checkpoint = directory.resolve("checkpoint");
+        int completedCount = 20;
+        String completedOutput = expectedOutput(0, completedCount).stream()
+                .map(line -> line + "\n")
+                .collect(Collectors.joining());
+        long outputPosition = completedOutput.getBytes(StandardCharsets.UTF_8).length;
+        Files.writeString(output, completedOutput + "{\"id\":\"partial", StandardCharsets.UTF_8);
+        Files.writeString(checkpoint, completedCount + " " + outputPosition, StandardCharsets.UTF_8);
+        UppercaseCompletionProvider provider = new UppercaseCompletionProvider();
+        BulkCompletionRunner runner = new BulkCompletionRunner(provider, 4, Duration.ofMinutes(1), progress -> {
+        });
+        runner.run(input, output, checkpoint);
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(expectedOutput(0, REQUEST_COUNT), lines);
+        assertEquals(REQUEST_COUNT - completedCount, provider.getMeter().getRequestCount());
+        assertEquals(REQUEST_COUNT - completedCount, runner.getMeter().getRequestCount());
+        assertTrue(provider.prompts.stream().noneMatch(prompt -> prompt.equals("prompt 0")));
+    }
+
+    private Path writeInput() throws IOException {
+        Path input = directory.resolve("input.jsonl");
+        String lines = IntStream.range(0, REQUEST_COUNT)
+                .mapToObj(i -> String.format("{\"id\":\"r%d\",\"prompt\":\"prompt %d\",\"maxTokens\":16}", i, i))
+                .collect(Collectors.joining("\n", "", "\n\n"));
+        Files.writeString(input, lines, StandardCharsets.UTF_8);
+        return input;
+    }
+
+    private static List<String> expectedOutput(int start, int end) {
+        return IntStream.range(start, end)
+                .mapToObj(i -> String.format("{\"id\":\"r%d\",\"completion\":\"PROMPT %d\"}", i, i))
+                .toList();
+    }
+
+    private static class UppercaseCompletionProvider extends CompletionProvider {
+
+        private final List<String> prompts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                             CompletableFuture<Void> cancellation) {
+            prompts.add(request.prompt());
+            CompletableFuture.runAsync(() -> {
+                callMeter.addRequestCount(1);
+                for (String token : request.prompt().toUpperCase(Locale.ROOT).split("(?= )")) {
+                    callMeter.addReceivedTokenCount(1);
+                    completionTokenHandlers.forEach(handler -> handler.submit(token));
+                }
+                completionTokenHandlers.forEach(SubmissionPublisher::close);
+            }, CompletableFuture.delayedExecutor((long) (Math.random() * 5), TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package systems.cauldron.completion.concurrent;
+
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.StubCompletionProvider;
+import systems.cauldron.completion.config.ChunkingConfig;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.tokenizer.Gpt3Tokenizer;
+import systems.cauldron.completion.tokenizer.Tokenizer;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChunkedCompletionTest {
+
+    private static final String TEMPLATE = "Summarize:%s";
+
+    @Test
+    public void mapReduceTest() throws Exception {
+        String document = IntStream.range(0, 200)
+                .mapToObj(i -> "Sentence number " + i + " of the document.")
+                .collect(Collectors.joining(" "));
+        StubCompletionProvider provider = new StubCompletionProvider(request -> Duration.ofMillis(10));
+        ChunkedCompletion chunkedCompletion = new ChunkedCompletion(provider, Gpt3Tokenizer.getInstance(), 4, new ChunkingConfig(256, 0));
+        StringReader reader = new StringReader(document);
+        String combined = chunkedCompletion.mapReduce(reader, TEMPLATE, new TerminationConfig(64, new String[0]),
+                new SamplingConfig(1.0, 1.0), completions -> completions.stream()
+                        .map(completion -> completion.substring("SUMMARIZE:".length()))
+                        .collect(Collectors.joining()));
+        assertEquals(document.toUpperCase(Locale.ROOT), combined);
+        assertTrue(provider.getPrompts().size() > 1);
+        for (String prompt : provider.getPrompts()) {
+            assertTrue(Gpt3Tokenizer.getInstance().tokenize(prompt).size() <= 256 - 64);
+        }
+        // the reader is left open at the end of the document rather than closed
+        assertEquals(-1, reader.read());
+    }
+
+    @Test
+    public void promptLimitTest() {
+        // one token per character, plus one more wherever two colons meet
+        Tokenizer tokenizer = text -> {
+            List<String> tokens = new ArrayList<>(text.chars().mapToObj(Character::toString).toList());
+            if (text.contains("::")) {
+                tokens.add("");
+            }
+            return tokens;
+        };
+        StubCompletionProvider provider = new StubCompletionProvider();
+        ChunkedCompletion chunkedCompletion = new ChunkedCompletion(provider, tokenizer, 1, new ChunkingConfig(16, 0));
+        List<CompletionResult> results = chunkedCompletion.map(new StringReader(":abcdef"), "Note:%s",
+                new TerminationConfig(4, new String[0]), new SamplingConfig(1.0, 1.0));
+        assertEquals(1, results.size());
+        assertInstanceOf(IllegalArgumentException.class, results.get(0).failure());
+        assertTrue(provider.getPrompts().isEmpty());
+    }
+
+    @Test
+    public void failureTest() {
+        StubCompletionProvider provider = new StubCompletionProvider();
+        ChunkedCompletion chunkedCompletion = new ChunkedCompletion(provider, Gpt3Tokenizer.getInstance(), 2, new ChunkingConfig(256, 0));
+        TerminationConfig terminationConfig = new TerminationConfig(64, new String[0]);
+        SamplingConfig samplingConfig = new SamplingConfig(1.0, 1.0);
+        List<CompletionResult> results = chunkedCompletion.map(new StringReader("document"), StubCompletionProvider.FAILURE_PROMPT_PREFIX + "%s",
+                terminationConfig, samplingConfig);
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isSuccessful());
+        assertThrows(CompletionException.class, () -> chunkedCompletion.mapReduce(new StringReader("document"),
+                StubCompletionProvider.FAILURE_PROMPT_PREFIX + "%s", terminationConfig, samplingConfig, List::size));
+        assertThrows(IllegalArgumentException.class, () -> chunkedCompletion.map(new StringReader("document"), TEMPLATE,
+                new TerminationConfig(256, new String[0]), samplingConfig));
+    }
+}
@@ -0,0 +1,95 @@
+package systems.cauldron.completion.concurrent;
+
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.StubCompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompletionFanOutTest {
+
+    @Test
+    public void blockingCompletionTest() {
+        StubCompletionProvider provider = new StubCompletionProvider();
+        assertEquals("HELLO WORLD", provider.complete(buildRequest("hello world")));
+        assertEquals(List.of("HELLO", " WORLD"), provider.stream(buildRequest("hello world")).toList());
+        assertThrows(CompletionException.class, () -> provider.complete(buildRequest("fail")));
+    }
+
+    @Test
+    public void collectAllTest() {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> Duration.ofMillis(10));
+        List<CompletionRequest> requests = IntStream.range(0, 10_000)
+                .mapToObj(i -> buildRequest(i % 1000 == 0 ? "fail " + i : "prompt " + i))
+                .toList();
+        List<CompletionResult> results = new CompletionFanOut(provider, 1000, CompletionFanOut.FailurePolicy.COLLECT_ALL)
+                .completeAll(requests);
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            CompletionResult result = results.get(i);
+            if (i % 1000 == 0) {
+                assertFalse(result.isSuccessful());
+            } else {
+                assertEquals("PROMPT " + i, result.completion());
+            }
+        }
+    }
+
+    @Test
+    public void failFastTest() {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> request.prompt().startsWith("fail")
+                ? Duration.ZERO
+                : Duration.ofSeconds(10));
+        List<CompletionRequest> requests = List.of(buildRequest("slow"), buildRequest("fail"), buildRequest("slow"));
+        Instant start = Instant.now();
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> new CompletionFanOut(provider, 3, CompletionFanOut.FailurePolicy.FAIL_FAST).completeAll(requests));
+        assertEquals("stub failure", exception.getCause().getMessage());
+        assertTrue(Duration.between(start, Instant.now()).compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    public void deadlineTest() {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> request.prompt().equals("slow")
+                ? Duration.ofSeconds(10)
+                : Duration.ZERO);
+        List<CompletionRequest> requests = List.of(buildRequest("fast"), buildRequest("slow"));
+        Instant deadline = Instant.now().plusMillis(200);
+        List<CompletionResult> results = new CompletionFanOut(provider, 2, CompletionFanOut.FailurePolicy.COLLECT_ALL)
+                .completeAll(requests, deadline);
+        assertEquals("FAST", results.get(0).completion());
+        assertInstanceOf(TimeoutException.class, results.get(1).failure());
+    }
+
+    @Test
+    public void cancelledRequestsTest() throws Exception {
+        // the failure waits until every request has been dispatched, so both slow ones are in flight when it arrives
+        StubCompletionProvider provider = new StubCompletionProvider(request -> request.prompt().startsWith("fail")
+                ? Duration.ofMillis(100)
+                : Duration.ofMillis(300));
+        List<CompletionRequest> requests = List.of(buildRequest("slow"), buildRequest("fail"), buildRequest("slow"));
+        assertThrows(CompletionException.class,
+                () -> new CompletionFanOut(provider, 3, CompletionFanOut.FailurePolicy.FAIL_FAST).completeAll(requests));
+        Thread.sleep(600);
+        assertEquals(3, provider.getPrompts().size());
+        assertEquals(2, provider.getAbandonedCount());
+        assertEquals(1, provider.getMeter().getRequestCount());
+    }
+
+    private static CompletionRequest buildRequest(String prompt) {
+        return new CompletionRequest(prompt, new TerminationConfig(16, new String[0]), new SamplingConfig(1.0, 1.0));
+    }
+}
@@ -0,0 +1,127 @@
+package systems.cauldron.completion.concurrent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.StubCompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.HedgingConfig;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgedCompletionProviderTest {
+
+    private static final Logger LOG = LogManager.getLogger(HedgedCompletionProviderTest.class);
+
+    private static final int REQUEST_COUNT = 400;
+    private static final double STALL_RATE = 0.05;
+    private static final Duration STALL_DELAY = Duration.ofSeconds(1);
+    private static final Duration NORMAL_DELAY = Duration.ofMillis(5);
+
+    @Test
+    public void tailLatencyTest() throws Exception {
+        long unhedgedP99 = measureP99(createStallingProvider(1L));
+        StubCompletionProvider backend = createStallingProvider(1L);
+        HedgedCompletionProvider hedgedProvider = new HedgedCompletionProvider(backend, new HedgingConfig(Duration.ofMillis(50), 0.0, 0.1));
+        long hedgedP99 = measureP99(hedgedProvider);
+        LOG.info("p99 unhedged: {}ms, hedged: {}ms, hedges: {}, hedge wins: {}",
+                unhedgedP99, hedgedP99, hedgedProvider.getHedgeCount(), hedgedProvider.getHedgeWinCount());
+        assertTrue(unhedgedP99 >= STALL_DELAY.toMillis());
+        assertTrue(hedgedP99 < STALL_DELAY.toMillis() / 2);
+        assertTrue(hedgedProvider.getHedgeCount() <= REQUEST_COUNT * 0.1);
+        assertTrue(hedgedProvider.getHedgeWinCount() > 0);
+    }
+
+    @Test
+    public void failureTest() {
+        StubCompletionProvider backend = new StubCompletionProvider();
+        HedgedCompletionProvider provider = new HedgedCompletionProvider(backend, new HedgingConfig(Duration.ZERO, 0.0, 1.0));
+        assertEquals("HELLO", provider.complete(buildRequest("hello")));
+        assertThrows(CompletionException.class, () -> provider.complete(buildRequest("fail")));
+    }
+
+    @Test
+    public void loserCancellationTest() throws Exception {
+        AtomicInteger callCount = new AtomicInteger();
+        StubCompletionProvider backend = new StubCompletionProvider(request -> callCount.getAndIncrement() == 0 ? Duration.ofMillis(300) : Duration.ZERO);
+        HedgedCompletionProvider provider = new HedgedCompletionProvider(backend, new HedgingConfig(Duration.ofMillis(20), 0.0, 1.0));
+        assertEquals("HEDGED CALL", provider.complete(buildRequest("hedged call")));
+        assertEquals(1, provider.getHedgeWinCount());
+        Thread.sleep(500);
+        assertEquals(1, backend.getAbandonedCount());
+        CompletionMeter meter = provider.getMeter();
+        assertEquals(1, meter.getRequestCount());
+        assertEquals(1, meter.getSentTokenCount());
+        assertEquals(2, meter.getReceivedTokenCount());
+        assertEquals(meter.getReceivedTokenCount(), backend.getMeter().getReceivedTokenCount());
+    }
+
+    @Test
+    public void configTest() {
+        StubCompletionProvider backend = new StubCompletionProvider();
+        assertThrows(IllegalArgumentException.class, () -> new HedgedCompletionProvider(backend, new HedgingConfig(null, 0.95, 0.1)));
+        assertThrows(IllegalArgumentException.class, () -> new HedgedCompletionProvider(backend, new HedgingConfig(Duration.ofMillis(-1), 0.0, 0.1)));
+    }
+
+    @Test
+    public void cancellationTest() throws Exception {
+        StubCompletionProvider backend = new StubCompletionProvider(request -> Duration.ofMillis(200));
+        HedgedCompletionProvider provider = new HedgedCompletionProvider(backend, new HedgingConfig(Duration.ofMillis(20), 0.0, 1.0));
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        CompletableFuture<Void> result = publisher.consume(item -> {
+        });
+        CompletableFuture<Void> cancellation = new CompletableFuture<>();
+        provider.complete(buildRequest("cancelled call"), List.of(publisher), provider.getMeter(), cancellation);
+        Thread.sleep(100);
+        cancellation.complete(null);
+        assertThrows(CancellationException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals(2, backend.getAbandonedCount());
+        assertEquals(0, provider.getMeter().getRequestCount());
+    }
+
+    private static StubCompletionProvider createStallingProvider(long seed) {
+        Random random = new Random(seed);
+        return new StubCompletionProvider(request -> random.nextDouble() < STALL_RATE ? STALL_DELAY : NORMAL_DELAY);
+    }
+
+    private static long measureP99(CompletionProvider provider) throws Exception {
+        LatencyWindow latencies = new LatencyWindow(REQUEST_COUNT);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = IntStream.range(0, REQUEST_COUNT)
+                    .<Future<?>>mapToObj(i -> executor.submit(() -> {
+                        long start = System.nanoTime();
+                        assertEquals("PROMPT " + i, provider.complete(buildRequest("prompt " + i)));
+                        latencies.record(System.nanoTime() - start);
+                    }))
+                    .toList();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        return Duration.ofNanos(latencies.percentile(0.99)).toMillis();
+    }
+
+    private static CompletionRequest buildRequest(String prompt) {
+        return new CompletionRequest(prompt, new TerminationConfig(16, new String[0]), new SamplingConfig(1.0, 1.0));
+    }
+}
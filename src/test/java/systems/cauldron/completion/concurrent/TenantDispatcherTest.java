@@ -0,0 +1,186 @@
+package systems.cauldron.completion.concurrent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.StubCompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TenantConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.config.TimeoutConfig;
+import systems.cauldron.completion.tokenizer.Gpt3Tokenizer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TenantDispatcherTest {
+
+    private static final Logger LOG = LogManager.getLogger(TenantDispatcherTest.class);
+
+    private static final int BATCH_REQUEST_COUNT = 400;
+    private static final int INTERACTIVE_REQUEST_COUNT = 40;
+    private static final int REJECTED_REQUEST_COUNT = 50000;
+    private static final Duration COMPLETION_DELAY = Duration.ofMillis(20);
+
+    @Test
+    public void interactiveLatencyTest() throws Exception {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> COMPLETION_DELAY);
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 4);
+        dispatcher.registerTenant("batch", new TenantConfig(1, 4));
+        dispatcher.registerTenant("interactive", new TenantConfig(4, 4));
+        List<CompletableFuture<String>> batchResults = new ArrayList<>();
+        for (int i = 0; i < BATCH_REQUEST_COUNT; i++) {
+            batchResults.add(submit(dispatcher, "batch", buildRequest("batch " + i)));
+        }
+        LatencyWindow latencies = new LatencyWindow(INTERACTIVE_REQUEST_COUNT);
+        for (int i = 0; i < INTERACTIVE_REQUEST_COUNT; i++) {
+            long start = System.nanoTime();
+            assertEquals("INTERACTIVE " + i, submit(dispatcher, "interactive", buildRequest("interactive " + i)).get(10, TimeUnit.SECONDS));
+            latencies.record(System.nanoTime() - start);
+        }
+        long interactiveP99 = Duration.ofNanos(latencies.percentile(0.99)).toMillis();
+        LOG.info("interactive p99 behind {} queued batch requests: {}ms", BATCH_REQUEST_COUNT, interactiveP99);
+        assertTrue(interactiveP99 < COMPLETION_DELAY.toMillis() * 10);
+        assertTrue(batchResults.stream().anyMatch(result -> !result.isDone()));
+        for (int i = 0; i < BATCH_REQUEST_COUNT; i++) {
+            assertEquals("BATCH " + i, batchResults.get(i).get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(BATCH_REQUEST_COUNT, dispatcher.getMeter("batch").getRequestCount());
+        assertEquals(INTERACTIVE_REQUEST_COUNT, dispatcher.getMeter("interactive").getRequestCount());
+        assertTrue(dispatcher.getMeter("interactive").getReceivedTokenCount() > 0);
+    }
+
+    @Test
+    public void concurrencyLimitTest() throws Exception {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> Duration.ofMillis(50));
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 8);
+        dispatcher.registerTenant("capped", new TenantConfig(1, 1));
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(submit(dispatcher, "capped", buildRequest("capped " + i)));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("CAPPED " + i, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertThrows(IllegalArgumentException.class, () -> submit(dispatcher, "unknown", buildRequest("unknown")));
+    }
+
+    @Test
+    public void expiredWhileQueuedTest() throws Exception {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> Duration.ofMillis(200));
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 1);
+        dispatcher.registerTenant("tenant", new TenantConfig(1, 1));
+        CompletableFuture<String> slow = submit(dispatcher, "tenant", buildRequest("slow"));
+        CompletionRequest expiring = new CompletionRequest("expiring", new TerminationConfig(512, new String[0]),
+                new SamplingConfig(1.0, 1.0), new TimeoutConfig(Instant.now().plusMillis(50), null));
+        CompletableFuture<String> expired = submit(dispatcher, "tenant", expiring);
+        assertEquals("SLOW", slow.get(5, TimeUnit.SECONDS));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> expired.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(1, dispatcher.getMeter("tenant").getExpiredCount());
+        assertEquals(List.of("slow"), provider.getPrompts());
+    }
+
+    @Test
+    public void expiredBehindBacklogTest() throws Exception {
+        StubCompletionProvider provider = new StubCompletionProvider(request -> Duration.ofMillis(200));
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 1);
+        dispatcher.registerTenant("tenant", new TenantConfig(1, 1));
+        List<CompletableFuture<String>> backlog = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            backlog.add(submit(dispatcher, "tenant", buildRequest("backlog " + i)));
+        }
+        CompletionRequest expiring = new CompletionRequest("expiring", new TerminationConfig(512, new String[0]),
+                new SamplingConfig(1.0, 1.0), new TimeoutConfig(Instant.now().plusMillis(50), null));
+        CompletableFuture<String> expired = submit(dispatcher, "tenant", expiring);
+        // the deadline passes while the first backlog request still holds the only slot
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> expired.get(150, TimeUnit.MILLISECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(1, dispatcher.getMeter("tenant").getExpiredCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("BACKLOG " + i, backlog.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, dispatcher.getMeter("tenant").getExpiredCount());
+        assertTrue(provider.getPrompts().stream().noneMatch("expiring"::equals));
+    }
+
+    @Test
+    public void rejectedRequestsTest() throws Exception {
+        StubCompletionProvider stub = new StubCompletionProvider();
+        CompletionProvider provider = new CompletionProvider() {
+            @Override
+            public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                                 CompletableFuture<Void> cancellation) {
+                if (request.prompt().startsWith("rejected")) {
+                    throw new IllegalArgumentException("rejected");
+                }
+                stub.complete(request, completionTokenHandlers, callMeter, cancellation);
+            }
+        };
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 1);
+        dispatcher.registerTenant("tenant", new TenantConfig(1, 1));
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < REJECTED_REQUEST_COUNT; i++) {
+            results.add(submit(dispatcher, "tenant", buildRequest("rejected " + i)));
+        }
+        for (CompletableFuture<String> result : results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(30, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        }
+        assertEquals("ACCEPTED", submit(dispatcher, "tenant", buildRequest("accepted")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, dispatcher.getMeter("tenant").getRequestCount());
+        assertEquals(1, provider.getMeter().getRequestCount());
+    }
+
+    @Test
+    public void meterTest() throws Exception {
+        StubCompletionProvider provider = new StubCompletionProvider();
+        TenantDispatcher dispatcher = new TenantDispatcher(provider, Gpt3Tokenizer.getInstance(), 2);
+        dispatcher.registerTenant("first", new TenantConfig(1, 2));
+        dispatcher.registerTenant("second", new TenantConfig(1, 2));
+        assertEquals("ONE TWO", submit(dispatcher, "first", buildRequest("one two")).get(5, TimeUnit.SECONDS));
+        assertEquals("THREE", submit(dispatcher, "second", buildRequest("three")).get(5, TimeUnit.SECONDS));
+        CompletionRequest expiring = new CompletionRequest("expired", new TerminationConfig(512, new String[0]),
+                new SamplingConfig(1.0, 1.0), new TimeoutConfig(Instant.now().minusMillis(1), null));
+        assertThrows(ExecutionException.class, () -> submit(dispatcher, "second", expiring).get(5, TimeUnit.SECONDS));
+        CompletionMeter first = dispatcher.getMeter("first");
+        CompletionMeter second = dispatcher.getMeter("second");
+        assertEquals(1, first.getRequestCount());
+        assertEquals(2, first.getReceivedTokenCount());
+        assertEquals(1, second.getRequestCount());
+        assertEquals(1, second.getReceivedTokenCount());
+        assertEquals(1, second.getExpiredCount());
+        assertEquals(0, second.getTimedOutCount());
+        assertEquals(2, provider.getMeter().getRequestCount());
+        assertEquals(3, provider.getMeter().getReceivedTokenCount());
+    }
+
+    private static CompletableFuture<String> submit(TenantDispatcher dispatcher, String tenantId, CompletionRequest request) {
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        StringBuilder sb = new StringBuilder();
+        CompletableFuture<String> result = publisher.consume(sb::append).thenApply(ignored -> sb.toString());
+        dispatcher.complete(tenantId, request, publisher);
+        return result;
+    }
+
+    private static CompletionRequest buildRequest(String prompt) {
+        return new CompletionRequest(prompt, new TerminationConfig(512, new String[0]), new SamplingConfig(1.0, 1.0));
+    }
+}
@@ -0,0 +1,77 @@
+package systems.cauldron.completion.loadtest;
+
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.CompletionProvider;
+import systems.cauldron.completion.config.CompletionRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadGeneratorTest {
+
+    private static final int RATE = 20;
+
+    @Test
+    public void openLoopTest() throws Exception {
+        // every response takes several send intervals, so a closed loop would fall far short of the target rate
+        try (StubCompletionServer server = new StubCompletionServer(Duration.ofMillis(300), Duration.ZERO)) {
+            CompletionProvider provider = CompletionProvider.create("stub", CompletionProvider.Type.OPENAI_ADA, server.getBaseUri());
+            LoadGenerator.Summary summary = new LoadGenerator(provider, List.of("The quick brown fox"), buildOptions()).run();
+            assertEquals(RATE, summary.sentCount());
+            assertEquals(RATE, summary.completedCount());
+            assertEquals(0, summary.errorCount());
+            assertEquals(RATE, summary.firstTokenLatencies().length);
+            assertTrue(summary.firstTokenLatencies()[0] >= TimeUnit.MILLISECONDS.toNanos(300));
+        }
+    }
+
+    @Test
+    public void coordinatedOmissionTest() throws Exception {
+        // a provider that admits one request at a time queues the others, and that wait belongs in their latency
+        SerialCompletionProvider provider = new SerialCompletionProvider(Duration.ofMillis(100));
+        LoadGenerator.Summary summary = new LoadGenerator(provider, List.of("The quick brown fox"), buildOptions()).run();
+        assertEquals(RATE, summary.completedCount());
+        long[] totalLatencies = summary.totalLatencies();
+        // the last request is intended 50ms after the one before it, but waits behind all of them holding the provider for 100ms each
+        assertTrue(totalLatencies[totalLatencies.length - 1] >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    private static LoadGenerator.Options buildOptions() {
+        return LoadGenerator.Options.parse(new String[]{"--rate", String.valueOf(RATE), "--duration", "1", "--interval", "1", "--drain", "10"});
+    }
+
+    private static class SerialCompletionProvider extends CompletionProvider {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Duration serviceTime;
+
+        private SerialCompletionProvider(Duration serviceTime) {
+            this.serviceTime = serviceTime;
+        }
+
+        @Override
+        public void complete(CompletionRequest request, List<SubmissionPublisher<String>> completionTokenHandlers, CompletionMeter callMeter,
+                             CompletableFuture<Void> cancellation) {
+            lock.lock();
+            try {
+                Thread.sleep(serviceTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+            completionTokenHandlers.forEach(handler -> {
+                handler.submit(" token");
+                handler.close();
+            });
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package systems.cauldron.completion.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class Ai21CompletionProviderTest {
+
+    private static final List<List<String>> CHOICE_TOKENS = List.of(
+            List.of(" red", " apples", " and", " pears", "."),
+            List.of(" green", " grapes", ".")
+    );
+
+    private final List<JsonObject> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @AfterEach
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void choiceMeterTest() throws Exception {
+        Ai21CompletionProvider provider = startProvider();
+        List<SubmissionPublisher<String>> publishers = List.of(new SubmissionPublisher<>(), new SubmissionPublisher<>());
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (SubmissionPublisher<String> publisher : publishers) {
+            StringBuilder sb = new StringBuilder();
+            results.add(publisher.consume(sb::append).thenApply(ignored -> sb.toString()));
+        }
+        provider.complete(new CompletionRequest("Fruit:", new TerminationConfig(8, new String[]{"."}), new SamplingConfig(1.0, 1.0)), publishers);
+        // the stop sequence is counted as a received token but not passed on
+        assertEquals(" red apples and pears", results.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(" green grapes", results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(2, requestBodies.get(0).getInt("numResults"));
+        CompletionMeter meter = provider.getMeter();
+        assertEquals(CHOICE_TOKENS.get(0).size(), meter.getReceivedTokenCount(0));
+        assertEquals(CHOICE_TOKENS.get(1).size(), meter.getReceivedTokenCount(1));
+        assertEquals(CHOICE_TOKENS.get(0).size() + CHOICE_TOKENS.get(1).size(), meter.getReceivedTokenCount());
+        assertEquals(1, meter.getRequestCount());
+    }
+
+    private Ai21CompletionProvider startProvider() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::respond);
+        server.start();
+        URI baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        return new Ai21CompletionProvider("test", Ai21CompletionProvider.Engine.J1_LARGE, baseUri);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try (JsonReader reader = Json.createReader(exchange.getRequestBody())) {
+                requestBodies.add(reader.readObject());
+            }
+            JsonArrayBuilder completions = Json.createArrayBuilder();
+            CHOICE_TOKENS.forEach(tokens -> completions.add(completion(tokens)));
+            byte[] body = Json.createObjectBuilder()
+                    .add("completions", completions)
+                    .build()
+                    .toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    private static JsonObject completion(List<String> tokens) {
+        JsonArrayBuilder tokenItems = Json.createArrayBuilder();
+        int start = 0;
+        for (String token : tokens) {
+            tokenItems.add(Json.createObjectBuilder()
+                    .add("generatedToken", Json.createObjectBuilder().add("token", token))
+                    .add("textRange", Json.createObjectBuilder().add("start", start).add("end", start + token.length())));
+            start += token.length();
+        }
+        return Json.createObjectBuilder()
+                .add("data", Json.createObjectBuilder()
+                        .add("text", String.join("", tokens))
+                        .add("tokens", tokenItems))
+                .add("finishReason", Json.createObjectBuilder()
+                        .add("reason", "stop")
+                        .add("sequence", "."))
+                .build();
+    }
+}
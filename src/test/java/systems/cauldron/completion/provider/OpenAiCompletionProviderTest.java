@@ -0,0 +1,351 @@
+package systems.cauldron.completion.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import systems.cauldron.completion.CompletionMeter;
+import systems.cauldron.completion.concurrent.CompletionFanOut;
+import systems.cauldron.completion.concurrent.CompletionResult;
+import systems.cauldron.completion.config.CompletionRequest;
+import systems.cauldron.completion.config.SamplingConfig;
+import systems.cauldron.completion.config.TerminationConfig;
+import systems.cauldron.completion.config.TimeoutConfig;
+import systems.cauldron.completion.tokenizer.Gpt3Tokenizer;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAiCompletionProviderTest {
+
+    private static final List<String> CHUNKS = List.of(" World", "!", "'");
+    private static final List<String> FIRST_CHOICE_CHUNKS = List.of(" red", " apples", " and pears");
+    private static final List<String> SECOND_CHOICE_CHUNKS = List.of(" green", " grapes");
+    private static final int FAN_OUT_REQUEST_COUNT = 200;
+    private static final int FAN_OUT_CONCURRENCY = 8;
+
+    private final AtomicInteger exchangeCount = new AtomicInteger();
+    private final List<JsonObject> requestBodies = new CopyOnWriteArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+
+    @AfterEach
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void streamTest() throws IOException {
+        OpenAiCompletionProvider provider = startProvider(Duration.ZERO);
+        assertEquals(String.join("", CHUNKS), provider.complete(buildRequest(new TimeoutConfig(null, null))));
+        CompletionMeter meter = provider.getMeter();
+        assertEquals(1, meter.getRequestCount());
+        assertTrue(meter.getReceivedTokenCount() > 0);
+    }
+
+    @Test
+    public void expiredBeforeDispatchTest() throws IOException {
+        OpenAiCompletionProvider provider = startProvider(Duration.ZERO);
+        TimeoutConfig timeoutConfig = new TimeoutConfig(Instant.now().minusMillis(1), null);
+        CompletionException exception = assertThrows(CompletionException.class, () -> provider.complete(buildRequest(timeoutConfig)));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(0, exchangeCount.get());
+        assertEquals(1, provider.getMeter().getExpiredCount());
+        assertEquals(0, provider.getMeter().getRequestCount());
+    }
+
+    @Test
+    public void idleTimeoutTest() throws Exception {
+        OpenAiCompletionProvider provider = startProvider(Duration.ofSeconds(10));
+        TimeoutConfig timeoutConfig = new TimeoutConfig(null, Duration.ofMillis(200));
+        List<String> results = new CopyOnWriteArrayList<>();
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        long start = System.nanoTime();
+        provider.complete(buildRequest(timeoutConfig), publisher);
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> publisher.consume(results::add).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(List.of(CHUNKS.get(0)), results);
+        assertEquals(1, provider.getMeter().getTimedOutCount());
+    }
+
+    @Test
+    public void deadlineTest() throws IOException {
+        OpenAiCompletionProvider provider = startProvider(Duration.ofSeconds(10));
+        TimeoutConfig timeoutConfig = new TimeoutConfig(Instant.now().plusMillis(300), Duration.ofSeconds(30));
+        long start = System.nanoTime();
+        CompletionException exception = assertThrows(CompletionException.class, () -> provider.complete(buildRequest(timeoutConfig)));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, provider.getMeter().getTimedOutCount());
+    }
+
+    @Test
+    public void resumeTest() throws IOException {
+        OpenAiCompletionProvider provider = startProvider(Duration.ZERO, 1);
+        assertEquals(String.join("", CHUNKS), provider.complete(buildRequest(new TimeoutConfig(null, null))));
+        assertEquals(2, exchangeCount.get());
+        JsonObject continuation = requestBodies.get(1);
+        assertEquals("Hello" + CHUNKS.get(0), continuation.getString("prompt"));
+        assertEquals(2, continuation.getInt("max_tokens"));
+        CompletionMeter meter = provider.getMeter();
+        assertEquals(1, meter.getResumedCount());
+        assertEquals(2, meter.getRequestCount());
+    }
+
+    @Test
+    public void cancellationTest() throws Exception {
+        OpenAiCompletionProvider provider = startProvider(Duration.ofSeconds(10));
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        List<String> results = new CopyOnWriteArrayList<>();
+        CountDownLatch firstChunk = new CountDownLatch(1);
+        CompletableFuture<Void> result = publisher.consume(item -> {
+            results.add(item);
+            firstChunk.countDown();
+        });
+        CompletableFuture<Void> cancellation = new CompletableFuture<>();
+        long start = System.nanoTime();
+        provider.complete(buildRequest(new TimeoutConfig(null, null)), List.of(publisher), provider.getMeter(), cancellation);
+        assertTrue(firstChunk.await(5, TimeUnit.SECONDS));
+        cancellation.complete(null);
+        assertThrows(CancellationException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(List.of(CHUNKS.get(0)), results);
+        assertEquals(0, provider.getMeter().getTimedOutCount());
+    }
+
+    @Test
+    public void lateSubscriberTest() throws Exception {
+        // subscribing after complete() returns is how callers have always used the providers
+        OpenAiCompletionProvider provider = startProvider(Duration.ofMillis(500));
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        provider.complete(buildRequest(new TimeoutConfig(null, null)), publisher);
+        Thread.sleep(200);
+        StringBuilder sb = new StringBuilder();
+        publisher.consume(sb::append).get(5, TimeUnit.SECONDS);
+        assertEquals(String.join("", CHUNKS.subList(1, CHUNKS.size())), sb.toString());
+    }
+
+    @Test
+    public void finishedBeforeTimeoutTest() throws Exception {
+        // the server keeps the connection open past the idle timeout after it has sent [DONE]
+        OpenAiCompletionProvider provider = startProvider(exchange -> events(exchange, List.of(choices(choice(0, CHUNKS.get(0)))), Duration.ofMillis(600)));
+        TimeoutConfig timeoutConfig = new TimeoutConfig(null, Duration.ofMillis(200));
+        assertEquals(CHUNKS.get(0), provider.complete(buildRequest(timeoutConfig)));
+        Thread.sleep(600);
+        assertEquals(0, provider.getMeter().getTimedOutCount());
+        assertEquals(1, provider.getMeter().getRequestCount());
+    }
+
+    @Test
+    public void connectionReuseTest() throws IOException {
+        OpenAiCompletionProvider provider = startProvider(Duration.ZERO);
+        List<CompletionRequest> requests = Collections.nCopies(FAN_OUT_REQUEST_COUNT, buildRequest(new TimeoutConfig(null, null)));
+        List<CompletionResult> results = new CompletionFanOut(provider, FAN_OUT_CONCURRENCY, CompletionFanOut.FailurePolicy.FAIL_FAST)
+                .completeAll(requests);
+        assertTrue(results.stream().allMatch(result -> String.join("", CHUNKS).equals(result.completion())));
+        assertTrue(clientPorts.size() <= FAN_OUT_CONCURRENCY * 2);
+    }
+
+    @Test
+    public void choiceMeterTest() throws Exception {
+        // chunks of the two choices arrive interleaved, out of order, and sometimes together in one event
+        OpenAiCompletionProvider provider = startProvider(exchange -> events(exchange, List.of(
+                choices(choice(1, SECOND_CHOICE_CHUNKS.get(0))),
+                choices(choice(0, FIRST_CHOICE_CHUNKS.get(0))),
+                choices(choice(1, SECOND_CHOICE_CHUNKS.get(1)), choice(0, FIRST_CHOICE_CHUNKS.get(1))),
+                choices(choice(0, FIRST_CHOICE_CHUNKS.get(2)))
+        )));
+        List<SubmissionPublisher<String>> publishers = List.of(new SubmissionPublisher<>(), new SubmissionPublisher<>());
+        List<CompletableFuture<String>> results = consumeAll(publishers);
+        provider.complete(buildRequest(new TimeoutConfig(null, null)), publishers);
+        assertEquals(String.join("", FIRST_CHOICE_CHUNKS), results.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(String.join("", SECOND_CHOICE_CHUNKS), results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(2, requestBodies.get(0).getInt("n"));
+        CompletionMeter meter = provider.getMeter();
+        long firstTokenCount = getTokenCount(FIRST_CHOICE_CHUNKS);
+        long secondTokenCount = getTokenCount(SECOND_CHOICE_CHUNKS);
+        assertEquals(firstTokenCount, meter.getReceivedTokenCount(0));
+        assertEquals(secondTokenCount, meter.getReceivedTokenCount(1));
+        assertEquals(firstTokenCount + secondTokenCount, meter.getReceivedTokenCount());
+        assertEquals(1, meter.getRequestCount());
+    }
+
+    @Test
+    public void unexpectedChoiceIndexTest() throws Exception {
+        OpenAiCompletionProvider provider = startProvider(exchange -> events(exchange, List.of(
+                choices(choice(0, FIRST_CHOICE_CHUNKS.get(0))),
+                choices(choice(2, SECOND_CHOICE_CHUNKS.get(0)))
+        )));
+        List<SubmissionPublisher<String>> publishers = List.of(new SubmissionPublisher<>(), new SubmissionPublisher<>());
+        List<CompletableFuture<String>> results = consumeAll(publishers);
+        provider.complete(buildRequest(new TimeoutConfig(null, null)), publishers);
+        for (CompletableFuture<String> result : results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(getRootCause(exception).getMessage().contains("unexpected choice index: 2"));
+        }
+        CompletionMeter meter = provider.getMeter();
+        assertEquals(meter.getReceivedTokenCount(0), meter.getReceivedTokenCount());
+        assertEquals(0, meter.getReceivedTokenCount(2));
+    }
+
+    private OpenAiCompletionProvider startProvider(Duration stall) throws IOException {
+        return startProvider(stall, 0);
+    }
+
+    private OpenAiCompletionProvider startProvider(Duration stall, int dropCount) throws IOException {
+        return startProvider(exchange -> stream(exchange, stall, dropCount));
+    }
+
+    private OpenAiCompletionProvider startProvider(HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", handler);
+        server.start();
+        URI baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        return new OpenAiCompletionProvider("test", OpenAiCompletionProvider.Engine.ADA, baseUri);
+    }
+
+    // a dropped stream ends after its first chunk without [DONE], and a continuation skips the chunks already in its prompt
+    private void stream(HttpExchange exchange, Duration stall, int dropCount) throws IOException {
+        boolean drop = exchangeCount.incrementAndGet() <= dropCount;
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        try (exchange) {
+            JsonObject requestBody;
+            try (JsonReader reader = Json.createReader(exchange.getRequestBody())) {
+                requestBody = reader.readObject();
+            }
+            requestBodies.add(requestBody);
+            String received = requestBody.getString("prompt").substring("Hello".length());
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            int start = 0;
+            while (!received.isEmpty() && received.startsWith(CHUNKS.get(start))) {
+                received = received.substring(CHUNKS.get(start++).length());
+            }
+            for (int i = start; i < CHUNKS.size(); i++) {
+                String chunk = "{\"choices\":[{\"text\":\"" + CHUNKS.get(i) + "\",\"index\":0}]}";
+                os.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                if (drop) {
+                    return;
+                }
+                if (i == 0 && !stall.isZero()) {
+                    Thread.sleep(stall);
+                }
+            }
+            os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client gave up on the stream
+        }
+    }
+
+    private void events(HttpExchange exchange, List<String> events) throws IOException {
+        events(exchange, events, Duration.ZERO);
+    }
+
+    private void events(HttpExchange exchange, List<String> events, Duration linger) throws IOException {
+        try (exchange) {
+            try (JsonReader reader = Json.createReader(exchange.getRequestBody())) {
+                requestBodies.add(reader.readObject());
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            for (String event : events) {
+                os.write(("data: " + event + "\n\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+            os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            if (!linger.isZero()) {
+                Thread.sleep(linger);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client gave up on the stream
+        }
+    }
+
+    private static String choices(JsonObject... choices) {
+        JsonArrayBuilder choiceArray = Json.createArrayBuilder();
+        for (JsonObject choice : choices) {
+            choiceArray.add(choice);
+        }
+        return Json.createObjectBuilder()
+                .add("choices", choiceArray)
+                .build()
+                .toString();
+    }
+
+    private static JsonObject choice(int index, String text) {
+        return Json.createObjectBuilder()
+                .add("text", text)
+                .add("index", index)
+                .build();
+    }
+
+    private static List<CompletableFuture<String>> consumeAll(List<SubmissionPublisher<String>> publishers) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (SubmissionPublisher<String> publisher : publishers) {
+            StringBuilder sb = new StringBuilder();
+            results.add(publisher.consume(sb::append).thenApply(ignored -> sb.toString()));
+        }
+        return results;
+    }
+
+    private static long getTokenCount(List<String> chunks) {
+        return chunks.stream()
+                .mapToLong(chunk -> Gpt3Tokenizer.getInstance().tokenize(chunk).size())
+                .sum();
+    }
+
+    private static Throwable getRootCause(Throwable throwable) {
+        while (throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private static CompletionRequest buildRequest(TimeoutConfig timeoutConfig) {
+        return new CompletionRequest("Hello", new TerminationConfig(3, new String[0]), new SamplingConfig(1.0, 1.0), timeoutConfig);
+    }
+}
@@ -0,0 +1,133 @@
+package systems.cauldron.completion.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DocumentChunkerTest {
+
+    private static final String[] WORDS = {"the", "completion", "token", "budget", "stream", "window", "prompt", "chunk", "of", "and"};
+
+    @Test
+    public void tokenBudgetTest() {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        String document = buildDocument(new Random(1L), 40);
+        List<String> chunks = chunk(new DocumentChunker(tokenizer, new StringReader(document), 200, 0));
+        assertTrue(chunks.size() > 1);
+        assertEquals(document, String.join("", chunks));
+        for (String chunk : chunks) {
+            assertTrue(tokenizer.tokenize(chunk).size() <= 200);
+        }
+        long paragraphEndCount = chunks.stream().skip(1).filter(chunk -> chunk.startsWith("\n\n")).count();
+        assertTrue(paragraphEndCount * 2 >= chunks.size() - 1);
+    }
+
+    @Test
+    public void overlapTest() {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        String document = buildDocument(new Random(2L), 20);
+        byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+        List<String> chunks = chunk(new DocumentChunker(tokenizer, new ByteArrayInputStream(bytes), 150, 40));
+        assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            assertTrue(tokenizer.tokenize(chunk).size() <= 150);
+            assertTrue(document.contains(chunk));
+            if (i > 0) {
+                int previousEnd = document.indexOf(chunks.get(i - 1)) + chunks.get(i - 1).length();
+                assertTrue(document.indexOf(chunk) < previousEnd);
+            }
+        }
+        assertTrue(document.endsWith(chunks.get(chunks.size() - 1)));
+    }
+
+    @Test
+    public void oversizedSegmentTest() {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        String document = "x".repeat(20000) + " tail.";
+        List<String> chunks = chunk(new DocumentChunker(tokenizer, new StringReader(document), 100, 0));
+        assertEquals(document, String.join("", chunks));
+        for (String chunk : chunks) {
+            assertTrue(tokenizer.tokenize(chunk).size() <= 100);
+        }
+    }
+
+    @Test
+    public void forcedCutTest() {
+        // a run without whitespace is cut where "ab" would have been one token, so the joined text
+        // needs one token more than its two segments do apart
+        Tokenizer tokenizer = new GreedyTokenizer(List.of("ab", "bcd"));
+        String document = "x".repeat(8191) + "abcd tail.";
+        int segmentTokenCount = tokenizer.tokenize("x".repeat(8191) + "a").size() + tokenizer.tokenize("bcd tail.").size();
+        assertEquals(segmentTokenCount + 1, tokenizer.tokenize(document).size());
+        List<String> chunks = chunk(new DocumentChunker(tokenizer, new StringReader(document), segmentTokenCount, 0));
+        assertEquals(document, String.join("", chunks));
+        for (String chunk : chunks) {
+            assertTrue(tokenizer.tokenize(chunk).size() <= segmentTokenCount);
+        }
+    }
+
+    private static List<String> chunk(DocumentChunker chunker) {
+        List<String> chunks = new ArrayList<>();
+        try (chunker) {
+            chunker.forEachRemaining(chunks::add);
+        }
+        return chunks;
+    }
+
+    // matches the longest vocabulary entry or run of up to 1024 x's at each position, falling back to single characters
+    private record GreedyTokenizer(List<String> vocabulary) implements Tokenizer {
+
+        @Override
+        public List<String> tokenize(String text) {
+            List<String> tokens = new ArrayList<>();
+            int position = 0;
+            while (position < text.length()) {
+                int length = 1;
+                for (String entry : vocabulary) {
+                    if (entry.length() > length && text.startsWith(entry, position)) {
+                        length = entry.length();
+                    }
+                }
+                int runLength = 0;
+                while (position + runLength < text.length() && text.charAt(position + runLength) == 'x' && runLength < 1024) {
+                    runLength++;
+                }
+                length = Math.max(length, Integer.highestOneBit(Math.max(runLength, 1)));
+                tokens.add(text.substring(position, position + length));
+                position += length;
+            }
+            return tokens;
+        }
+    }
+
+    private static String buildDocument(Random random, int paragraphCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < paragraphCount; p++) {
+            if (p > 0) {
+                sb.append("\n\n");
+            }
+            int sentenceCount = 2 + random.nextInt(5);
+            for (int s = 0; s < sentenceCount; s++) {
+                if (s > 0) {
+                    sb.append(' ');
+                }
+                int wordCount = 4 + random.nextInt(12);
+                for (int w = 0; w < wordCount; w++) {
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    sb.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : " " + word);
+                }
+                sb.append(random.nextBoolean() ? "." : "?");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,10 +1,22 @@
 package systems.cauldron.completion.tokenizer;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import systems.cauldron.completion.tokenizer.bpe.Gpt3BpeReader;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Gpt3TokenizerTest {
 
@@ -23,5 +35,90 @@ public class Gpt3TokenizerTest {
         List<String> tokens = tokenizer.tokenize(OPENAPI_EXAMPLE);
         assertEquals(OPENAPI_EXAMPLE_TOKEN_COUNT, tokens.size());
     }
-}
 
+    @Test
+    public void estimateBoundsTest() {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        for (String text : buildCorpus()) {
+            TokenCountEstimate estimate = tokenizer.estimateTokenCount(text);
+            int tokenCount = tokenizer.tokenize(text).size();
+            assertTrue(estimate.lowerBound() <= tokenCount, "lower bound exceeded for: " + text);
+            assertTrue(estimate.upperBound() >= tokenCount, "upper bound exceeded for: " + text);
+            assertTrue(estimate.lowerBound() <= estimate.estimate() && estimate.estimate() <= estimate.upperBound());
+            for (int limit : new int[]{0, tokenCount - 1, tokenCount, tokenCount + 1, 2 * tokenCount}) {
+                assertEquals(tokenCount > limit, tokenizer.exceedsTokenCount(text, limit), "limit " + limit + " for: " + text);
+            }
+        }
+    }
+
+    @Test
+    public void exceedsLargeInputTest() {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        String document = OPENAPI_EXAMPLE.repeat(20_000);
+        assertTrue(document.length() > 1_000_000);
+        assertTrue(tokenizer.exceedsTokenCount(document, 2048));
+        tokenizer.tokenize(OPENAPI_EXAMPLE);
+        TokenCountEstimate estimate = tokenizer.estimateTokenCount(document);
+        assertTrue(estimate.isExact());
+        assertEquals(OPENAPI_EXAMPLE_TOKEN_COUNT * 20_000, estimate.estimate());
+    }
+
+    @Test
+    public void cacheSnapshotTest(@TempDir Path directory) throws IOException {
+        Gpt3Tokenizer tokenizer = Gpt3Tokenizer.getInstance();
+        // hits are sampled per call, so the entry is made far hotter than anything the other tests tokenize
+        for (int i = 0; i < 10_000; i++) {
+            tokenizer.tokenize(" snapshotted");
+        }
+        Path snapshot = directory.resolve("token-cache.bin");
+        tokenizer.saveCacheSnapshot(snapshot, 1);
+        byte[] mergeTableHash = new Gpt3BpeReader().getMergeTableHash();
+        Map<String, List<String>> entries = TokenCacheSnapshot.read(snapshot, mergeTableHash);
+        assertEquals(Map.of(" snapshotted", tokenizer.tokenize(" snapshotted")), entries);
+        // a snapshot left by an earlier run holds a pre-token that nothing in this one has tokenized yet
+        Path restored = directory.resolve("restored-token-cache.bin");
+        List<String> restoredTokens = List.of(" un", "snap", "shot", "table");
+        TokenCacheSnapshot.write(restored, mergeTableHash, Map.of(" unsnapshottable", restoredTokens));
+        assertFalse(tokenizer.estimateTokenCount(" unsnapshottable").isExact());
+        try (TokenCacheSnapshotter ignored = new TokenCacheSnapshotter(tokenizer, restored, Duration.ofHours(1), 10_000)) {
+            assertTrue(tokenizer.estimateTokenCount(" unsnapshottable").isExact());
+            assertEquals(restoredTokens, tokenizer.tokenize(" unsnapshottable"));
+        }
+        assertTrue(TokenCacheSnapshot.read(restored, mergeTableHash).size() > 1);
+        mergeTableHash[0]++;
+        assertTrue(TokenCacheSnapshot.read(restored, mergeTableHash).isEmpty());
+        byte[] content = Files.readAllBytes(restored);
+        Files.write(restored, Arrays.copyOf(content, content.length - 1));
+        assertEquals(0, tokenizer.loadCacheSnapshot(restored));
+    }
+
+    private static List<String> buildCorpus() {
+        List<String> corpus = new ArrayList<>(List.of(
+                "",
+                " ",
+                "\n\n\n",
+                OPENAPI_EXAMPLE,
+                "The quick brown fox jumps over the lazy dog.",
+                "supercalifragilisticexpialidocious antidisestablishmentarianism",
+                "3.14159265358979323846264338327950288419716939937510",
+                "def main(args):\n    return {'key': [1, 2, 3]}  # comment",
+                "https://example.com/path?query=value&other=1234#fragment",
+                "----------------------------------------------------------------",
+                "I'm sure they'll say it's what we'd've done",
+                "日本語のテキストも分割されます。中文文本也是如此。",
+                "Ünïcödé àccénts and ßharp ſ ligatures ﬁ ﬂ",
+                "🤚🏾👩‍👩‍👧‍👦🏳️‍🌈 emoji sequences"));
+        Random random = new Random(0L);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 \t\n.,;:!?'\"-_()[]{}<>/\\@#$%^&*é漢🙂";
+        for (int i = 0; i < 200; i++) {
+            int length = random.nextInt(400);
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < length) {
+                int codePoint = alphabet.codePointAt(alphabet.offsetByCodePoints(0, random.nextInt(alphabet.codePointCount(0, alphabet.length()))));
+                sb.appendCodePoint(codePoint);
+            }
+            corpus.add(sb.toString());
+        }
+        return corpus;
+    }
+}